@@ -0,0 +1,243 @@
+/**
+ * @file ContentParentIndex.java
+ * @brief Class indexing the content pane containing each node of a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+
+import org.dockfx.pane.ContentPane;
+import org.dockfx.pane.ContentSplitPane;
+import org.dockfx.pane.ContentTabPane;
+
+/**
+ * An index from every dock node and content pane in the layout of a dock pane
+ * to the content pane containing it, so that the parent of a node is found
+ * without searching the layout. The index listens to the items and tabs of
+ * every indexed content pane, so it follows every structural change of the
+ * layout no matter how it is made.
+ *
+ * @since DockFX 0.1
+ */
+final class ContentParentIndex
+{
+  /**
+   * The indexed nodes mapped to the content pane containing them, or to null
+   * for the root of the layout.
+   */
+  private final IdentityHashMap<Node, ContentPane> parents =
+                                                           new IdentityHashMap<>();
+
+  /**
+   * The observed item and tab lists mapped to the content pane they belong to.
+   */
+  private final IdentityHashMap<List<?>, ContentPane> owners =
+                                                             new IdentityHashMap<>();
+
+  /**
+   * Follows the items of the indexed split panes.
+   */
+  private final ListChangeListener<Node> itemsListener =
+                                                       new ListChangeListener<Node>()
+                                                       {
+                                                         @Override
+                                                         public void onChanged(Change<? extends Node> change)
+                                                         {
+                                                           ContentPane owner =
+                                                                             owners.get(change.getList());
+                                                           while (change.next())
+                                                           {
+                                                             for (Node node : change.getRemoved())
+                                                             {
+                                                               remove(owner,
+                                                                      node);
+                                                             }
+                                                             for (Node node : change.getAddedSubList())
+                                                             {
+                                                               add(owner,
+                                                                   node);
+                                                             }
+                                                           }
+                                                         }
+                                                       };
+
+  /**
+   * Follows the tabs of the indexed tab panes.
+   */
+  private final ListChangeListener<Tab> tabsListener =
+                                                     new ListChangeListener<Tab>()
+                                                     {
+                                                       @Override
+                                                       public void onChanged(Change<? extends Tab> change)
+                                                       {
+                                                         ContentPane owner =
+                                                                           owners.get(change.getList());
+                                                         while (change.next())
+                                                         {
+                                                           for (Tab tab : change.getRemoved())
+                                                           {
+                                                             remove(owner,
+                                                                    tab.getContent());
+                                                           }
+                                                           for (Tab tab : change.getAddedSubList())
+                                                           {
+                                                             add(owner,
+                                                                 tab.getContent());
+                                                           }
+                                                         }
+                                                       }
+                                                     };
+
+  /**
+   * The root of the indexed layout.
+   */
+  private Node root;
+
+  /**
+   * Index the layout of a new root. The dock pane tells the index about its
+   * root rather than the index listening to the children of the dock pane, so
+   * the root stays indexed while it is detached during a batch.
+   *
+   * @param root
+   *          The new root or null if the layout is empty.
+   */
+  void setRoot(Node root)
+  {
+    if (root == this.root)
+      return;
+
+    // the new root is indexed first so that the part of the layout that moved
+    // from the old root into the new one is not indexed again
+    Node oldRoot = this.root;
+    this.root = root;
+    add(null, root);
+    remove(null, oldRoot);
+  }
+
+  /**
+   * The content pane containing the node.
+   *
+   * @param node
+   *          The dock node or content pane.
+   * @return The content pane containing the node or null if the node is the
+   *         root or not part of the layout.
+   */
+  ContentPane getParent(Node node)
+  {
+    return parents.get(node);
+  }
+
+  /**
+   * Whether the node is part of the layout.
+   *
+   * @param node
+   *          The dock node or content pane.
+   * @return Whether the node is part of the layout.
+   */
+  boolean contains(Node node)
+  {
+    return parents.containsKey(node);
+  }
+
+  private void add(ContentPane parent, Node node)
+  {
+    if (node == null)
+      return;
+
+    parents.put(node, parent);
+
+    // a pane that was moved keeps being observed
+    if (node instanceof ContentPane
+        && !owners.containsKey(childrenOf((ContentPane) node)))
+    {
+      ContentPane pane = (ContentPane) node;
+      observe(pane);
+      for (Node child : pane.getChildrenList())
+      {
+        add(pane, child);
+      }
+    }
+  }
+
+  private void remove(ContentPane parent, Node node)
+  {
+    // a node that was added to another pane before it was removed from this
+    // one already points to its new parent
+    if (node == null || !parents.containsKey(node)
+        || parents.get(node) != parent)
+      return;
+
+    parents.remove(node);
+
+    if (node instanceof ContentPane)
+    {
+      ContentPane pane = (ContentPane) node;
+      unobserve(pane);
+      for (Node child : pane.getChildrenList())
+      {
+        remove(pane, child);
+      }
+    }
+  }
+
+  private void observe(ContentPane pane)
+  {
+    if (pane instanceof ContentSplitPane)
+    {
+      ObservableList<Node> items = ((ContentSplitPane) pane).getItems();
+      owners.put(items, pane);
+      items.addListener(itemsListener);
+    }
+    else
+    {
+      ObservableList<Tab> tabs = ((ContentTabPane) pane).getTabs();
+      owners.put(tabs, pane);
+      tabs.addListener(tabsListener);
+    }
+  }
+
+  private void unobserve(ContentPane pane)
+  {
+    if (pane instanceof ContentSplitPane)
+    {
+      ObservableList<Node> items = ((ContentSplitPane) pane).getItems();
+      owners.remove(items);
+      items.removeListener(itemsListener);
+    }
+    else
+    {
+      ObservableList<Tab> tabs = ((ContentTabPane) pane).getTabs();
+      owners.remove(tabs);
+      tabs.removeListener(tabsListener);
+    }
+  }
+
+  private static List<?> childrenOf(ContentPane pane)
+  {
+    if (pane instanceof ContentSplitPane)
+      return ((ContentSplitPane) pane).getItems();
+
+    return ((ContentTabPane) pane).getTabs();
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * @file DockDropZones.java
+ * @brief Class implementing a snapshot of the drop zones of a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import org.dockfx.DockPane.DockPosButton;
+
+/**
+ * The drop zones of a dock pane during a drag, which are the bounds of the
+ * dock nodes and the root it can dock to and of its dock indicator buttons.
+ * The layout of a dock pane does not change while a dock node is dragged over
+ * it, so each zone is captured once in the coordinates of its scene and
+ * every following dock event is hit tested against the captured zones instead
+ * of transforming the nodes again.
+ *
+ * Zones are kept relative to their scene so that moving a window does not
+ * invalidate them. They are dropped when the dock target index of the scene
+ * of the dock pane is rebuilt, which happens when a window is resized or the
+ * layout changes, and when the drag leaves the dock pane.
+ *
+ * @since DockFX 0.1
+ */
+final class DockDropZones
+{
+  /**
+   * The bounds of a single drop zone in the coordinates of its scene.
+   */
+  static final class Zone
+  {
+    private final Scene scene;
+    private final double minX, minY, width, height;
+
+    private Zone(Scene scene, Bounds bounds)
+    {
+      this.scene = scene;
+      this.minX = bounds.getMinX();
+      this.minY = bounds.getMinY();
+      this.width = bounds.getWidth();
+      this.height = bounds.getHeight();
+    }
+
+    /**
+     * The horizontal screen coordinate of the origin of this zone.
+     *
+     * @return The horizontal screen coordinate of the origin of this zone.
+     */
+    double getScreenX()
+    {
+      return scene.getWindow().getX() + scene.getX() + minX;
+    }
+
+    /**
+     * The vertical screen coordinate of the origin of this zone.
+     *
+     * @return The vertical screen coordinate of the origin of this zone.
+     */
+    double getScreenY()
+    {
+      return scene.getWindow().getY() + scene.getY() + minY;
+    }
+
+    /**
+     * The width of this zone.
+     *
+     * @return The width of this zone.
+     */
+    double getWidth()
+    {
+      return width;
+    }
+
+    /**
+     * The height of this zone.
+     *
+     * @return The height of this zone.
+     */
+    double getHeight()
+    {
+      return height;
+    }
+
+    private boolean contains(double screenX, double screenY)
+    {
+      Window window = scene.getWindow();
+      if (window == null || !window.isShowing())
+        return false;
+
+      double x = screenX - window.getX() - scene.getX() - minX;
+      double y = screenY - window.getY() - scene.getY() - minY;
+      return x >= 0 && x < width && y >= 0 && y < height;
+    }
+  }
+
+  /**
+   * The dock pane whose drop zones are captured.
+   */
+  private final DockPane dockPane;
+
+  /**
+   * The captured zones of the dock nodes and the root.
+   */
+  private final IdentityHashMap<Node, Zone> zones = new IdentityHashMap<>();
+
+  /**
+   * The captured zones of the indicator buttons in the order of the buttons,
+   * so that hit testing them is plain arithmetic over an array.
+   */
+  private Zone[] buttonZones = new Zone[0];
+
+  /**
+   * The generation of the dock target index the zones were captured for.
+   */
+  private long generation = -1;
+
+  DockDropZones(DockPane dockPane)
+  {
+    this.dockPane = dockPane;
+  }
+
+  /**
+   * Drop all captured zones so that they are captured again on demand.
+   */
+  void invalidate()
+  {
+    zones.clear();
+    invalidateButtons();
+    generation = -1;
+  }
+
+  /**
+   * Drop the captured zones of the indicator buttons, for instance because the
+   * indicator was moved inside of its scene.
+   */
+  void invalidateButtons()
+  {
+    Arrays.fill(buttonZones, null);
+  }
+
+  /**
+   * The drop zone of a dock node, the root of the dock pane or an indicator
+   * button, captured on first use.
+   *
+   * @param node
+   *          The node whose drop zone is requested.
+   * @return The drop zone of the node or null if the node is not shown or has
+   *         not been laid out yet.
+   */
+  Zone zoneOf(Node node)
+  {
+    validate();
+
+    Zone zone = zones.get(node);
+    if (zone == null)
+    {
+      zone = capture(node);
+      if (zone != null)
+      {
+        zones.put(node, zone);
+      }
+    }
+    return zone;
+  }
+
+  /**
+   * The first indicator button containing the screen location.
+   *
+   * @param buttons
+   *          The indicator buttons of the dock pane.
+   * @param screenX
+   *          The horizontal screen coordinate of the location.
+   * @param screenY
+   *          The vertical screen coordinate of the location.
+   * @return The indicator button at the location or null if there is none.
+   */
+  DockPosButton buttonAt(List<DockPosButton> buttons,
+                         double screenX,
+                         double screenY)
+  {
+    validate();
+
+    if (buttonZones.length != buttons.size())
+    {
+      buttonZones = new Zone[buttons.size()];
+    }
+
+    for (int i = 0; i < buttonZones.length; i++)
+    {
+      Zone zone = buttonZones[i];
+      if (zone == null)
+      {
+        // the buttons are captured once the indicator has been positioned
+        // and laid out
+        zone = buttonZones[i] = capture(buttons.get(i));
+      }
+      if (zone != null && zone.contains(screenX, screenY))
+      {
+        return buttons.get(i);
+      }
+    }
+    return null;
+  }
+
+  private static Zone capture(Node node)
+  {
+    Scene scene = node.getScene();
+    if (scene == null || scene.getWindow() == null)
+      return null;
+
+    Bounds bounds = node.localToScene(node.getLayoutBounds());
+    // nodes that have not been laid out yet are captured on a later call
+    if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0)
+      return null;
+
+    return new Zone(scene, bounds);
+  }
+
+  private void validate()
+  {
+    Scene scene = dockPane.getScene();
+    if (scene == null)
+      return;
+
+    long current = DockTargetIndex.forScene(scene).getGeneration();
+    if (current != generation)
+    {
+      zones.clear();
+      invalidateButtons();
+      generation = current;
+    }
+  }
+}
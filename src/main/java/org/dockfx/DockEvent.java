@@ -152,7 +152,7 @@ public class DockEvent extends Event
   /**
    * Absolute horizontal x position of the event.
    */
-  private final double screenX;
+  private double screenX;
 
   /**
    * Returns absolute horizontal position of the event.
@@ -167,7 +167,7 @@ public class DockEvent extends Event
   /**
    * Absolute vertical y position of the event.
    */
-  private final double screenY;
+  private double screenY;
 
   /**
    * Returns absolute vertical position of the event.
@@ -185,7 +185,7 @@ public class DockEvent extends Event
    * {@code Scene}, then the value is relative to the boundsInParent of the
    * root-most parent of the DockEvent's node.
    */
-  private final double sceneX;
+  private double sceneX;
 
   /**
    * Returns horizontal position of the event relative to the origin of the
@@ -209,7 +209,7 @@ public class DockEvent extends Event
    * {@code Scene}, then the value is relative to the boundsInParent of the
    * root-most parent of the DockEvent's node.
    */
-  private final double sceneY;
+  private double sceneY;
 
   /**
    * Returns vertical position of the event relative to the origin of the
@@ -240,6 +240,10 @@ public class DockEvent extends Event
    */
   public final PickResult getPickResult()
   {
+    if (pickResult == null)
+    {
+      pickResult = new PickResult(getTarget(), sceneX, sceneY);
+    }
     return pickResult;
   }
 
@@ -385,4 +389,46 @@ public class DockEvent extends Event
     this.contents = contents;
   }
 
+  /**
+   * Reuse this event for another target and location. Dragging a dock node
+   * fires the same few events for every mouse event, so reusing them instead
+   * of creating new ones avoids producing garbage while dragging. Handlers
+   * never see the reused instance itself since event dispatch hands them
+   * copies of the fired event. The pick result is created again on demand.
+   * 
+   * @param source
+   *          the source of the event. Can be null.
+   * @param target
+   *          the target of the event. Can be null.
+   * @param x
+   *          The x with respect to the source.
+   * @param y
+   *          The y with respect to the source.
+   * @param screenX
+   *          The x coordinate relative to screen.
+   * @param screenY
+   *          The y coordinate relative to screen.
+   * @return This event.
+   */
+  DockEvent update(Object source,
+                   EventTarget target,
+                   double x,
+                   double y,
+                   double screenX,
+                   double screenY)
+  {
+    this.source = source;
+    this.target = target;
+    this.consumed = false;
+    this.x = x;
+    this.y = y;
+    this.z = 0;
+    this.screenX = screenX;
+    this.screenY = screenY;
+    this.sceneX = x;
+    this.sceneY = y;
+    this.pickResult = null;
+    return this;
+  }
+
 }
@@ -0,0 +1,185 @@
+/**
+ * @file DockEventDispatchChain.java
+ * @brief Class implementing a reusable event dispatch chain for dock events.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.Arrays;
+import javafx.event.Event;
+import javafx.event.EventDispatchChain;
+import javafx.event.EventDispatcher;
+import javafx.scene.Node;
+
+/**
+ * An event dispatch chain that is built once for a dock event target and
+ * reused for every dock event fired on that target during a drag. Firing an
+ * event the usual way builds the chain from the target up through all of its
+ * parents, the scene and the window for every event, which is costly for dock
+ * panes nested in deep containers.
+ *
+ * The chain holds the event dispatchers of the target and its parents, so
+ * handlers added or removed in the meantime are still honored. It has to be
+ * built again when the target is moved in the scene graph, which the
+ * generation of the {@link DockTargetIndex} of its scene tells.
+ *
+ * @since DockFX 0.1
+ */
+final class DockEventDispatchChain implements EventDispatchChain
+{
+  /**
+   * The dispatchers from the window down to the target.
+   */
+  private EventDispatcher[] dispatchers = new EventDispatcher[16];
+
+  /**
+   * The number of dispatchers in the chain.
+   */
+  private int size = 0;
+
+  /**
+   * The index of the dispatcher the next call to
+   * {@link #dispatchEvent(Event)} passes the event to while an event is
+   * dispatched.
+   */
+  private int position = 0;
+
+  /**
+   * Whether an event is currently dispatched through this chain.
+   */
+  private boolean dispatching = false;
+
+  /**
+   * The target this chain was built for.
+   */
+  private Node target;
+
+  /**
+   * The generation of the dock target index of the scene of the target at the
+   * time this chain was built.
+   */
+  private long generation;
+
+  /**
+   * Whether this chain was built for the target in the given generation of the
+   * dock target index of its scene.
+   *
+   * @param target
+   *          The event target.
+   * @param generation
+   *          The current generation of the dock target index of the scene of
+   *          the target.
+   * @return Whether this chain can be used to fire events on the target.
+   */
+  boolean isBuiltFor(Node target, long generation)
+  {
+    return this.target == target && this.generation == generation;
+  }
+
+  /**
+   * Build this chain for the target.
+   *
+   * @param target
+   *          The event target.
+   * @param generation
+   *          The current generation of the dock target index of the scene of
+   *          the target.
+   */
+  void build(Node target, long generation)
+  {
+    Arrays.fill(dispatchers, 0, size, null);
+    size = 0;
+    this.target = target;
+    this.generation = generation;
+    target.buildEventDispatchChain(this);
+  }
+
+  /**
+   * Fire the event on the target of this chain. The event has to be targeted
+   * at the target of this chain already.
+   *
+   * @param event
+   *          The event that is to be fired.
+   */
+  void fire(Event event)
+  {
+    if (dispatching)
+    {
+      // a handler fired an event on the same target while this chain is in
+      // use, so fall back to building a new chain
+      Event.fireEvent(target, event);
+      return;
+    }
+
+    dispatching = true;
+    position = 0;
+    try
+    {
+      dispatchEvent(event);
+    }
+    finally
+    {
+      dispatching = false;
+      position = 0;
+    }
+  }
+
+  @Override
+  public EventDispatchChain append(EventDispatcher eventDispatcher)
+  {
+    ensureCapacity();
+    dispatchers[size++] = eventDispatcher;
+    return this;
+  }
+
+  @Override
+  public EventDispatchChain prepend(EventDispatcher eventDispatcher)
+  {
+    ensureCapacity();
+    System.arraycopy(dispatchers, 0, dispatchers, 1, size++);
+    dispatchers[0] = eventDispatcher;
+    return this;
+  }
+
+  @Override
+  public Event dispatchEvent(Event event)
+  {
+    if (position == size)
+      return event;
+
+    // each dispatcher passes the event on to the rest of the chain which is
+    // this chain advanced by one position
+    EventDispatcher eventDispatcher = dispatchers[position++];
+    try
+    {
+      return eventDispatcher.dispatchEvent(event, this);
+    }
+    finally
+    {
+      position--;
+    }
+  }
+
+  private void ensureCapacity()
+  {
+    if (size == dispatchers.length)
+    {
+      dispatchers = Arrays.copyOf(dispatchers, size * 2);
+    }
+  }
+}
@@ -0,0 +1,471 @@
+/**
+ * @file DockLayout.java
+ * @brief Class implementing an immutable model of the layout of a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+
+import org.dockfx.pane.ContentSplitPane;
+import org.dockfx.pane.ContentTabPane;
+
+/**
+ * An immutable model of the layout of the docked nodes of a dock pane. A
+ * layout is a tree of splits, which arrange their children side by side with
+ * relative weights, tabs, which stack dock nodes with one of them selected,
+ * and leaves, which are single dock nodes.
+ *
+ * A dock pane reports its current layout with {@link DockPane#getDockLayout()}
+ * and is switched to another one with
+ * {@link DockPane#setDockLayout(DockLayout)}, which only applies the
+ * differences between both layouts to the scene graph.
+ *
+ * @since DockFX 0.1
+ */
+public abstract class DockLayout
+{
+  private DockLayout()
+  {
+  }
+
+  /**
+   * Create a layout of a single dock node.
+   *
+   * @param dockNode
+   *          The dock node.
+   * @return The layout of the dock node.
+   */
+  public static Leaf leaf(DockNode dockNode)
+  {
+    return new Leaf(dockNode);
+  }
+
+  /**
+   * Create a layout arranging its children side by side with equal weights.
+   *
+   * @param orientation
+   *          The orientation the children are arranged in.
+   * @param children
+   *          The layouts of the children.
+   * @return The layout of the split.
+   */
+  public static Split split(Orientation orientation, DockLayout... children)
+  {
+    return new Split(orientation, Arrays.asList(children), new double[0]);
+  }
+
+  /**
+   * Create a layout arranging its children side by side.
+   *
+   * @param orientation
+   *          The orientation the children are arranged in.
+   * @param children
+   *          The layouts of the children.
+   * @param weights
+   *          The relative sizes of the children, one for each child, or none
+   *          for equal sizes.
+   * @return The layout of the split.
+   */
+  public static Split split(Orientation orientation,
+                            List<? extends DockLayout> children,
+                            double... weights)
+  {
+    return new Split(orientation, children, weights);
+  }
+
+  /**
+   * Create a layout stacking dock nodes in tabs.
+   *
+   * @param selectedIndex
+   *          The index of the selected dock node.
+   * @param dockNodes
+   *          The dock nodes in the order of their tabs.
+   * @return The layout of the tabs.
+   */
+  public static Tabs tabs(int selectedIndex, DockNode... dockNodes)
+  {
+    return new Tabs(Arrays.asList(dockNodes), selectedIndex);
+  }
+
+  /**
+   * Create a layout stacking dock nodes in tabs.
+   *
+   * @param dockNodes
+   *          The dock nodes in the order of their tabs.
+   * @param selectedIndex
+   *          The index of the selected dock node.
+   * @return The layout of the tabs.
+   */
+  public static Tabs tabs(List<DockNode> dockNodes, int selectedIndex)
+  {
+    return new Tabs(dockNodes, selectedIndex);
+  }
+
+  /**
+   * Take a snapshot of the layout of a part of the layout of a dock pane.
+   *
+   * @param node
+   *          A dock node, content split pane or content tab pane.
+   * @return The layout of the node or null if the node is no part of a
+   *         layout.
+   */
+  static DockLayout of(Node node)
+  {
+    if (node instanceof DockNode)
+      return new Leaf((DockNode) node);
+
+    if (node instanceof ContentSplitPane)
+    {
+      ContentSplitPane splitPane = (ContentSplitPane) node;
+      List<DockLayout> children = new ArrayList<>();
+      for (Node item : splitPane.getItems())
+      {
+        DockLayout child = of(item);
+        if (child != null)
+        {
+          children.add(child);
+        }
+      }
+
+      double[] weights = new double[0];
+      double[] positions = splitPane.getDividerPositions();
+      if (positions.length == children.size() - 1)
+      {
+        weights = Split.toWeights(positions);
+      }
+      return new Split(splitPane.getOrientation(), children, weights);
+    }
+
+    if (node instanceof ContentTabPane)
+    {
+      ContentTabPane tabPane = (ContentTabPane) node;
+      List<DockNode> dockNodes = new ArrayList<>();
+      for (Tab tab : tabPane.getTabs())
+      {
+        if (tab.getContent() instanceof DockNode)
+        {
+          dockNodes.add((DockNode) tab.getContent());
+        }
+      }
+      return new Tabs(dockNodes,
+                      tabPane.getSelectionModel().getSelectedIndex());
+    }
+
+    return null;
+  }
+
+  /**
+   * Collect the dock nodes of this layout.
+   *
+   * @param dockNodes
+   *          The list the dock nodes are added to.
+   */
+  abstract void collectDockNodes(List<DockNode> dockNodes);
+
+  /**
+   * The dock nodes of this layout in depth first order.
+   *
+   * @return The dock nodes of this layout.
+   */
+  public List<DockNode> getDockNodes()
+  {
+    List<DockNode> dockNodes = new ArrayList<>();
+    collectDockNodes(dockNodes);
+    return Collections.unmodifiableList(dockNodes);
+  }
+
+  /**
+   * The layout of a single dock node.
+   */
+  public static final class Leaf extends DockLayout
+  {
+    private final DockNode dockNode;
+
+    private Leaf(DockNode dockNode)
+    {
+      if (dockNode == null)
+        throw new IllegalArgumentException("dockNode must not be null");
+
+      this.dockNode = dockNode;
+    }
+
+    /**
+     * The dock node of this leaf.
+     *
+     * @return The dock node of this leaf.
+     */
+    public DockNode getDockNode()
+    {
+      return dockNode;
+    }
+
+    @Override
+    void collectDockNodes(List<DockNode> dockNodes)
+    {
+      dockNodes.add(dockNode);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Leaf && ((Leaf) obj).dockNode == dockNode;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(dockNode);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Leaf[" + dockNode.getTitle() + "]";
+    }
+  }
+
+  /**
+   * The layout of children arranged side by side.
+   */
+  public static final class Split extends DockLayout
+  {
+    private final Orientation orientation;
+    private final List<DockLayout> children;
+    private final double[] weights;
+
+    private Split(Orientation orientation,
+                  List<? extends DockLayout> children,
+                  double[] weights)
+    {
+      if (orientation == null)
+        throw new IllegalArgumentException("orientation must not be null");
+      if (weights.length != 0 && weights.length != children.size())
+        throw new IllegalArgumentException("expected one weight for each child");
+
+      this.orientation = orientation;
+      this.children = Collections.unmodifiableList(new ArrayList<>(children));
+      this.weights = normalize(weights, children.size());
+    }
+
+    /**
+     * The orientation the children of this split are arranged in.
+     *
+     * @return The orientation of this split.
+     */
+    public Orientation getOrientation()
+    {
+      return orientation;
+    }
+
+    /**
+     * The layouts of the children of this split.
+     *
+     * @return The unmodifiable list of the children of this split.
+     */
+    public List<DockLayout> getChildren()
+    {
+      return children;
+    }
+
+    /**
+     * The relative sizes of the children of this split, which sum up to one.
+     *
+     * @return A copy of the weights of the children.
+     */
+    public double[] getWeights()
+    {
+      return weights.clone();
+    }
+
+    /**
+     * The divider positions of a split pane sizing its children by the
+     * weights of this split.
+     *
+     * @return The divider positions of this split.
+     */
+    public double[] getDividerPositions()
+    {
+      double[] positions = new double[Math.max(0, weights.length - 1)];
+      double position = 0;
+      for (int i = 0; i < positions.length; i++)
+      {
+        position += weights[i];
+        positions[i] = position;
+      }
+      return positions;
+    }
+
+    @Override
+    void collectDockNodes(List<DockNode> dockNodes)
+    {
+      for (DockLayout child : children)
+      {
+        child.collectDockNodes(dockNodes);
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Split))
+        return false;
+
+      Split other = (Split) obj;
+      return orientation == other.orientation
+             && children.equals(other.children)
+             && Arrays.equals(weights, other.weights);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (orientation.hashCode() * 31 + children.hashCode()) * 31
+             + Arrays.hashCode(weights);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Split[" + orientation + ", " + children + ", "
+             + Arrays.toString(weights) + "]";
+    }
+
+    static double[] toWeights(double[] dividerPositions)
+    {
+      double[] weights = new double[dividerPositions.length + 1];
+      double previous = 0;
+      for (int i = 0; i < dividerPositions.length; i++)
+      {
+        weights[i] = dividerPositions[i] - previous;
+        previous = dividerPositions[i];
+      }
+      weights[dividerPositions.length] = 1 - previous;
+      return weights;
+    }
+
+    private static double[] normalize(double[] weights, int count)
+    {
+      double[] normalized = new double[count];
+      double total = 0;
+      for (double weight : weights)
+      {
+        if (weight < 0 || Double.isNaN(weight))
+          throw new IllegalArgumentException("weights must not be negative");
+        total += weight;
+      }
+
+      for (int i = 0; i < count; i++)
+      {
+        normalized[i] = total > 0 ? weights[i] / total : 1.0 / count;
+      }
+      return normalized;
+    }
+  }
+
+  /**
+   * The layout of dock nodes stacked in tabs.
+   */
+  public static final class Tabs extends DockLayout
+  {
+    private final List<DockNode> dockNodes;
+    private final int selectedIndex;
+
+    private Tabs(List<DockNode> dockNodes, int selectedIndex)
+    {
+      if (dockNodes.contains(null))
+        throw new IllegalArgumentException("dockNodes must not contain null");
+
+      this.dockNodes = Collections.unmodifiableList(new ArrayList<>(dockNodes));
+      this.selectedIndex = Math.max(-1, Math.min(selectedIndex,
+                                                 dockNodes.size() - 1));
+    }
+
+    /**
+     * The index of the selected dock node.
+     *
+     * @return The index of the selected dock node or -1 if there is none.
+     */
+    public int getSelectedIndex()
+    {
+      return selectedIndex;
+    }
+
+    @Override
+    public List<DockNode> getDockNodes()
+    {
+      return dockNodes;
+    }
+
+    @Override
+    void collectDockNodes(List<DockNode> dockNodes)
+    {
+      dockNodes.addAll(this.dockNodes);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Tabs))
+        return false;
+
+      Tabs other = (Tabs) obj;
+      return selectedIndex == other.selectedIndex
+             && dockNodes.size() == other.dockNodes.size()
+             && identical(dockNodes, other.dockNodes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      int hash = selectedIndex;
+      for (DockNode dockNode : dockNodes)
+      {
+        hash = hash * 31 + System.identityHashCode(dockNode);
+      }
+      return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+      List<String> titles = new ArrayList<>();
+      for (DockNode dockNode : dockNodes)
+      {
+        titles.add(dockNode.getTitle());
+      }
+      return "Tabs[" + titles + ", " + selectedIndex + "]";
+    }
+
+    private static boolean identical(List<DockNode> a, List<DockNode> b)
+    {
+      for (int i = 0; i < a.size(); i++)
+      {
+        if (a.get(i) != b.get(i))
+          return false;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/**
+ * @file DockLayoutReconciler.java
+ * @brief Class applying a dock layout to the scene graph of a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+
+import org.dockfx.pane.ContentPane;
+import org.dockfx.pane.ContentSplitPane;
+import org.dockfx.pane.ContentTabPane;
+import org.dockfx.pane.DockNodeTab;
+
+/**
+ * Turns the scene graph of the layout of a dock pane into the scene graph of
+ * a target dock layout with as few mutations as possible. The current scene
+ * graph is walked along with the target layout and every split pane, tab
+ * pane, tab and dock node that is already in the right place is kept as it
+ * is, so only the parts of the layout that actually changed are touched and
+ * styled and laid out again.
+ *
+ * Panes are reused by position: a split or tabs of the target layout reuses
+ * the pane of the same kind found at the same place in the current scene
+ * graph. Dock nodes and their tabs are reused by identity wherever they are.
+ *
+ * @since DockFX 0.1
+ */
+final class DockLayoutReconciler
+{
+  /**
+   * Divider positions closer than this are considered equal.
+   */
+  private static final double EPSILON = 1e-6;
+
+  /**
+   * The dock pane whose layout is reconciled, which creates the new tab panes.
+   */
+  private final DockPane dockPane;
+
+  /**
+   * The panes of the current scene graph that are reused for the target.
+   */
+  private final Set<ContentPane> reused =
+                                        Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * The tabs of the current scene graph by their dock node so that a dock node
+   * moved between tab panes keeps its tab.
+   */
+  private final IdentityHashMap<DockNode, DockNodeTab> tabs =
+                                                            new IdentityHashMap<>();
+
+  /**
+   * The panes of the current scene graph.
+   */
+  private final List<ContentPane> panes = new ArrayList<>();
+
+  DockLayoutReconciler(DockPane dockPane)
+  {
+    this.dockPane = dockPane;
+  }
+
+  /**
+   * Build the scene graph of the target layout from the current one.
+   *
+   * @param root
+   *          The root of the current scene graph or null if there is none.
+   * @param target
+   *          The target layout.
+   * @return The root of the scene graph of the target layout, which is the
+   *         current root if it could be reused.
+   */
+  Node reconcile(Node root, DockLayout target)
+  {
+    collect(root);
+
+    Node newRoot = build(null, root, target);
+
+    // panes that are no longer used let go of their children so that they do
+    // not hold on to dock nodes that moved elsewhere
+    for (ContentPane pane : panes)
+    {
+      if (!reused.contains(pane))
+      {
+        if (pane instanceof ContentSplitPane)
+        {
+          ((ContentSplitPane) pane).getItems().clear();
+        }
+        else
+        {
+          ((ContentTabPane) pane).getTabs().clear();
+        }
+        pane.setContentParent(null);
+      }
+    }
+    return newRoot;
+  }
+
+  private void collect(Node node)
+  {
+    if (node instanceof ContentSplitPane)
+    {
+      panes.add((ContentPane) node);
+      for (Node item : ((ContentSplitPane) node).getItems())
+      {
+        collect(item);
+      }
+    }
+    else if (node instanceof ContentTabPane)
+    {
+      panes.add((ContentPane) node);
+      for (Tab tab : ((ContentTabPane) node).getTabs())
+      {
+        if (tab instanceof DockNodeTab && tab.getContent() instanceof DockNode)
+        {
+          tabs.put((DockNode) tab.getContent(), (DockNodeTab) tab);
+        }
+      }
+    }
+  }
+
+  private Node build(ContentPane parent, Node current, DockLayout target)
+  {
+    Node node;
+    if (target instanceof DockLayout.Split)
+    {
+      node = buildSplit(current, (DockLayout.Split) target);
+    }
+    else if (target instanceof DockLayout.Tabs)
+    {
+      node = buildTabs(current, (DockLayout.Tabs) target);
+    }
+    else
+    {
+      DockNode dockNode = ((DockLayout.Leaf) target).getDockNode();
+      if (dockNode.isTabbed())
+      {
+        dockNode.tabbedProperty().set(false);
+      }
+      return dockNode;
+    }
+
+    ContentPane pane = (ContentPane) node;
+    if (pane.getContentParent() != parent)
+    {
+      pane.setContentParent(parent);
+    }
+    return node;
+  }
+
+  private Node buildSplit(Node current, DockLayout.Split target)
+  {
+    ContentSplitPane splitPane;
+    if (current instanceof ContentSplitPane && reused.add((ContentPane) current))
+    {
+      splitPane = (ContentSplitPane) current;
+    }
+    else
+    {
+      splitPane = new ContentSplitPane();
+      reused.add(splitPane);
+    }
+
+    if (splitPane.getOrientation() != target.getOrientation())
+    {
+      splitPane.setOrientation(target.getOrientation());
+    }
+
+    // the children of the current pane are snapshot before they are patched
+    List<Node> currentItems = new ArrayList<>(splitPane.getItems());
+    List<DockLayout> children = target.getChildren();
+    List<Node> items = new ArrayList<>(children.size());
+    for (int i = 0; i < children.size(); i++)
+    {
+      Node currentItem = i < currentItems.size() ? currentItems.get(i)
+                                                 : null;
+      items.add(build(splitPane, currentItem, children.get(i)));
+    }
+    patch(splitPane.getItems(), items);
+
+    double[] positions = target.getDividerPositions();
+    if (!equal(splitPane.getDividerPositions(), positions))
+    {
+      splitPane.setDividerPositions(positions);
+    }
+    return splitPane;
+  }
+
+  private Node buildTabs(Node current, DockLayout.Tabs target)
+  {
+    ContentTabPane tabPane;
+    if (current instanceof ContentTabPane && reused.add((ContentPane) current))
+    {
+      tabPane = (ContentTabPane) current;
+    }
+    else
+    {
+      tabPane = dockPane.createTabPane();
+      reused.add(tabPane);
+    }
+
+    List<Tab> newTabs = new ArrayList<>();
+    for (DockNode dockNode : target.getDockNodes())
+    {
+      DockNodeTab tab = tabs.remove(dockNode);
+      if (tab == null)
+      {
+        tab = new DockNodeTab(dockNode);
+      }
+      else
+      {
+        // a tab moved between tab panes is taken out of its old pane first
+        // so that clearing the old pane later does not detach it again
+        if (tab.getTabPane() != null && tab.getTabPane() != tabPane)
+        {
+          tab.getTabPane().getTabs().remove(tab);
+        }
+        if (!dockNode.isTabbed())
+        {
+          dockNode.tabbedProperty().set(true);
+        }
+      }
+      newTabs.add(tab);
+    }
+    patch(tabPane.getTabs(), newTabs);
+
+    int selectedIndex = target.getSelectedIndex();
+    if (tabPane.getSelectionModel().getSelectedIndex() != selectedIndex)
+    {
+      if (selectedIndex < 0)
+      {
+        tabPane.getSelectionModel().clearSelection();
+      }
+      else
+      {
+        tabPane.getSelectionModel().select(selectedIndex);
+      }
+    }
+    return tabPane;
+  }
+
+  /**
+   * Edit the list in place until it holds the target elements, leaving the
+   * elements that stay in place untouched.
+   */
+  static <T> void patch(ObservableList<T> list, List<T> target)
+  {
+    if (identical(list, target))
+      return;
+
+    Set<T> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+    kept.addAll(target);
+    for (int i = list.size() - 1; i >= 0; i--)
+    {
+      if (!kept.contains(list.get(i)))
+      {
+        list.remove(i);
+      }
+    }
+
+    for (int i = 0; i < target.size(); i++)
+    {
+      T element = target.get(i);
+      if (i < list.size() && list.get(i) == element)
+        continue;
+
+      for (int j = i + 1; j < list.size(); j++)
+      {
+        if (list.get(j) == element)
+        {
+          list.remove(j);
+          break;
+        }
+      }
+      list.add(i, element);
+    }
+  }
+
+  private static boolean identical(List<?> a, List<?> b)
+  {
+    if (a.size() != b.size())
+      return false;
+
+    for (int i = 0; i < a.size(); i++)
+    {
+      if (a.get(i) != b.get(i))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean equal(double[] a, double[] b)
+  {
+    if (a.length != b.length)
+      return false;
+
+    for (int i = 0; i < a.length; i++)
+    {
+      if (Math.abs(a[i] - b[i]) > EPSILON)
+        return false;
+    }
+    return true;
+  }
+}
@@ -20,8 +20,12 @@
 
 package org.dockfx;
 
+import java.util.function.Supplier;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -34,18 +38,15 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
-import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
-import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
-import javafx.stage.WindowEvent;
 
 import org.dockfx.pane.DockNodeTab;
 import org.dockfx.viewControllers.DockFXViewController;
@@ -73,6 +74,17 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
    * The contents of the dock node, i.e. a TreeView or ListView.
    */
   private Node contents;
+  /**
+   * Creates the contents of a lazy dock node the first time it is shown, or
+   * null once the contents exist.
+   */
+  private Supplier<Node> contentsFactory;
+
+  /**
+   * Whether the contents of this lazy dock node are created after the current
+   * layout pass.
+   */
+  private boolean materializePending = false;
   /**
    * The title bar that implements our dragging and state manipulation.
    */
@@ -141,6 +153,22 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
 
                                                 if (!get())
                                                 {
+                                                  // the monitor the stage was
+                                                  // restored on may have been
+                                                  // removed meanwhile
+                                                  if (!ScreenTopology.isOnScreen(xPosBeforeMaximizing,
+                                                                                 yPosBeforeMaximizing))
+                                                  {
+                                                    Rectangle2D bounds =
+                                                                       ScreenTopology.getVisualBounds(xPosBeforeMaximizing,
+                                                                                                      yPosBeforeMaximizing,
+                                                                                                      widthBeforeMaximizing,
+                                                                                                      heightBeforeMaximizing);
+                                                    xPosBeforeMaximizing =
+                                                                         bounds.getMinX();
+                                                    yPosBeforeMaximizing =
+                                                                         bounds.getMinY();
+                                                  }
                                                   stage.setX(xPosBeforeMaximizing);
                                                   stage.setY(yPosBeforeMaximizing);
                                                   stage.setWidth(widthBeforeMaximizing);
@@ -170,14 +198,11 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
                                                 // https://bugs.openjdk.java.net/browse/JDK-8133330
                                                 if (this.get())
                                                 {
-                                                  Screen screen =
-                                                                Screen.getScreensForRectangle(stage.getX(),
-                                                                                              stage.getY(),
-                                                                                              stage.getWidth(),
-                                                                                              stage.getHeight())
-                                                                      .get(0);
                                                   Rectangle2D bounds =
-                                                                     screen.getVisualBounds();
+                                                                     ScreenTopology.getVisualBounds(stage.getX(),
+                                                                                                    stage.getY(),
+                                                                                                    stage.getWidth(),
+                                                                                                    stage.getHeight());
 
                                                   stage.setX(bounds.getMinX());
                                                   stage.setY(bounds.getMinY());
@@ -247,6 +272,48 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
     this(contents, null, null);
   }
 
+  /**
+   * Creates a DockNode whose contents are created the first time it is shown,
+   * which is when its tab is selected or when it is docked untabbed or floated
+   * in a showing window. Until then the dock node shows an empty placeholder
+   * with the style class dock-node-placeholder, so dock nodes that are never
+   * opened do not build and style their contents.
+   * 
+   * @param contentsFactory
+   *          Creates the contents of the dock node, which may be a tree or
+   *          another scene graph node.
+   * @param title
+   *          The caption title of this dock node which maintains bidirectional
+   *          state with the title bar and stage.
+   * @param graphic
+   *          The caption graphic of this dock node which maintains
+   *          bidirectional state with the title bar and stage.
+   * @see #materializedProperty()
+   */
+  public DockNode(Supplier<Node> contentsFactory, String title, Node graphic)
+  {
+    this(new StackPane(), title, graphic, null);
+    this.contents.getStyleClass().add("dock-node-placeholder");
+    this.contentsFactory = contentsFactory;
+    this.materializedProperty.set(false);
+  }
+
+  /**
+   * Creates a DockNode whose contents are created the first time it is shown.
+   * 
+   * @param contentsFactory
+   *          Creates the contents of the dock node, which may be a tree or
+   *          another scene graph node.
+   * @param title
+   *          The caption title of this dock node which maintains bidirectional
+   *          state with the title bar and stage.
+   * @see #DockNode(Supplier, String, Node)
+   */
+  public DockNode(Supplier<Node> contentsFactory, String title)
+  {
+    this(contentsFactory, title, null);
+  }
+
   /**
    *
    * Creates a default DockNode with contents loaded from FXMLFile at provided
@@ -382,6 +449,71 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
     this.getChildren().set(this.getChildren().indexOf(this.contents),
                            contents);
     this.contents = contents;
+
+    // contents set explicitly replace the placeholder of a lazy dock node
+    this.contentsFactory = null;
+    this.materializedProperty.set(true);
+  }
+
+  /**
+   * Create the contents of a lazy dock node now, replacing its placeholder.
+   * Nothing happens if the contents already exist.
+   */
+  public void materialize()
+  {
+    if (contentsFactory == null)
+      return;
+
+    Supplier<Node> factory = contentsFactory;
+    contentsFactory = null;
+    Node newContents = factory.get();
+    VBox.setVgrow(newContents, Priority.ALWAYS);
+    setContents(newContents);
+  }
+
+  @Override
+  protected void layoutChildren()
+  {
+    // a lazy dock node laid out while it can be seen creates its contents
+    // after the layout pass, since the layout requests of the new contents and
+    // of the split pane sizing it would be lost during the pass
+    if (contentsFactory != null && !materializePending && isShowing())
+    {
+      materializePending = true;
+      Platform.runLater(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          materializePending = false;
+          if (contentsFactory != null && isShowing())
+          {
+            materialize();
+            // styled right away so they do not show up unstyled
+            contents.applyCss();
+          }
+        }
+      });
+    }
+    super.layoutChildren();
+  }
+
+  /**
+   * Whether this dock node is in a showing window and neither it nor any of its
+   * parents is invisible, which hides the contents of unselected tabs.
+   */
+  private boolean isShowing()
+  {
+    if (getScene() == null || getScene().getWindow() == null
+        || !getScene().getWindow().isShowing())
+      return false;
+
+    for (Node node = this; node != null; node = node.getParent())
+    {
+      if (!node.isVisible())
+        return false;
+    }
+    return true;
   }
 
   /**
@@ -462,28 +594,10 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
         this.undock();
       }
 
-      stage = new Stage();
-
-      dockPane.getScene()
-              .getWindow()
-              .addEventFilter(WindowEvent.WINDOW_CLOSE_REQUEST,
-                              new EventHandler<WindowEvent>()
-                              {
-                                @Override
-                                public void handle(WindowEvent event)
-                                {
-                                  stage.close();
-                                }
-                              });
-
+      // the dock pane keeps the stages of floating dock nodes for reuse, the
+      // stages are owned by its window and closed along with it
+      stage = dockPane.acquireFloatingStage(stageStyle);
       stage.titleProperty().bind(titleProperty);
-      if (dockPane != null && dockPane.getScene() != null
-          && dockPane.getScene().getWindow() != null)
-      {
-        stage.initOwner(dockPane.getScene().getWindow());
-      }
-
-      stage.initStyle(stageStyle);
 
       // offset the new stage to cover exactly the area the dock was local to
       // the scene
@@ -519,8 +633,8 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
         else
         {
           // using the center of the screen if no relative position is available
-          Rectangle2D primScreenBounds = Screen.getPrimary()
-                                               .getVisualBounds();
+          Rectangle2D primScreenBounds =
+                                       ScreenTopology.getPrimaryVisualBounds();
           double centerX =
                          (primScreenBounds.getWidth()
                           - Math.max(getWidth(), getMinWidth())) / 2;
@@ -536,16 +650,11 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
         stagePosition = stagePosition.add(translation);
       }
 
-      // the border pane allows the dock node to
+      // the border pane of the stage allows the dock node to
       // have a drop shadow effect on the border
-      // but also maintain the layout of contents
-      // such as a tab that has no content
-      borderPane = new BorderPane();
-      borderPane.getStyleClass().add("dock-node-border");
+      borderPane = (BorderPane) stage.getScene().getRoot();
       borderPane.setCenter(this);
 
-      Scene scene = new Scene(borderPane);
-
       // apply the floating property so we can get its padding size
       // while it is floating to offset it by the drop shadow
       // this way it pops out above exactly where it was when docked
@@ -563,8 +672,6 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
       double insetsHeight = insetsDelta.getTop()
                             + insetsDelta.getBottom();
 
-      stage.setScene(scene);
-
       stage.setMinWidth(borderPane.minWidth(this.getMinWidth())
                         + insetsWidth);
       stage.setMinHeight(borderPane.minHeight(this.getMinHeight())
@@ -587,11 +694,6 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
         stage.setY(stagePosition.getY() - insetsDelta.getTop());
       }
 
-      if (stageStyle == StageStyle.TRANSPARENT)
-      {
-        scene.setFill(null);
-      }
-
       stage.setResizable(this.isStageResizable());
       if (this.isStageResizable())
       {
@@ -612,11 +714,17 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
       this.floatingProperty.set(floating);
       this.setMinimizable(floating);
 
+      // the state of the stage belongs to this use of the pooled stage
+      this.setMaximized(false);
+      this.setMinimized(false);
+
       stage.removeEventFilter(MouseEvent.MOUSE_PRESSED, this);
       stage.removeEventFilter(MouseEvent.MOUSE_MOVED, this);
       stage.removeEventFilter(MouseEvent.MOUSE_DRAGGED, this);
+      stage.titleProperty().unbind();
 
-      stage.close();
+      dockPane.releaseFloatingStage(stage);
+      stage = null;
     }
   }
 
@@ -664,10 +772,11 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
   }
 
   /**
-   * The stage associated with this dock node. Can be null if the dock node was
-   * never set to floating.
+   * The stage associated with this dock node. It is null whenever the dock node
+   * is not floating since the stage is returned to the stage pool of the dock
+   * pane when the dock node is docked.
    * 
-   * @return The stage associated with this node.
+   * @return The stage associated with this node or null if it is not floating.
    */
   public final Stage getStage()
   {
@@ -686,7 +795,9 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
   }
 
   /**
-   * The contents managed by this dock node.
+   * The contents managed by this dock node. A dock node created with a
+   * contents factory returns its placeholder until it is first shown or
+   * {@link #materialize()} is called, see {@link #isMaterialized()}.
    * 
    * @return The contents managed by this dock node.
    */
@@ -1082,6 +1193,28 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
     return tabbedProperty.get();
   }
 
+  /**
+   * Boolean property maintaining whether the contents of this node exist, which
+   * turns true when a node created with a contents factory is first shown and
+   * its placeholder is replaced by the created contents.
+   *
+   * @defaultValue true
+   */
+  public final ReadOnlyBooleanProperty materializedProperty()
+  {
+    return materializedProperty.getReadOnlyProperty();
+  }
+
+  private ReadOnlyBooleanWrapper materializedProperty =
+                                                     new ReadOnlyBooleanWrapper(this,
+                                                                                "materialized",
+                                                                                true);
+
+  public final boolean isMaterialized()
+  {
+    return materializedProperty.get();
+  }
+
   /**
    * Boolean property maintaining whether this node is currently closed.
    */
@@ -1162,12 +1295,17 @@ public class DockNode extends VBox implements EventHandler<MouseEvent>
     this.lastDockPos = dockPos;
   }
 
-  private final void dockImpl(DockPane dockPane)
+  final void dockImpl(DockPane dockPane)
   {
     if (isFloating())
     {
       setFloating(false);
     }
+    else if (isDocked())
+    {
+      // a node dragged as an outline is still docked where it came from
+      undock();
+    }
     this.prevDockPane = this.dockPane;
     this.dockPane = dockPane;
     this.dockedProperty.set(true);
@@ -28,33 +28,41 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.ObservableMap;
 import javafx.css.PseudoClass;
 import javafx.event.EventHandler;
+import javafx.event.EventTarget;
 import javafx.geometry.Orientation;
 import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
 import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Tab;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.Popup;
-import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.stage.StageStyle;
 import javafx.util.Duration;
 
 import com.sun.javafx.css.StyleManager;
@@ -87,6 +95,18 @@ public class DockPane extends StackPane
    */
   private boolean exclusive = false;
 
+  /**
+   * Whether the dock nodes of this dock pane move and pick their dock target
+   * only once per pulse for the latest mouse location while being dragged.
+   */
+  private boolean coalescingDragEvents = true;
+
+  /**
+   * Whether the dock nodes of this dock pane stay docked and are represented
+   * by an outline while being dragged.
+   */
+  private boolean outlineDragging = false;
+
   /**
    * Whether a DOCK_ENTER event has been received by this dock pane since the
    * last DOCK_EXIT event was received.
@@ -120,11 +140,26 @@ public class DockPane extends StackPane
    * the animation or disable it.
    */
   private Timeline dockAreaStrokeTimeline;
+  /**
+   * The pane holding the root dock indicator buttons and the docking area
+   * indicator.
+   */
+  private StackPane dockRootPane;
   /**
    * The popup used to display the root dock indicator buttons and the docking
-   * area indicator.
+   * area indicator when indicator popups are used, null otherwise.
    */
   private Popup dockIndicatorOverlay;
+  /**
+   * The layer on top of the layout of this dock pane that displays all dock
+   * indicators inside of its own scene unless indicator popups are used.
+   */
+  private Pane dockIndicatorLayer;
+  /**
+   * Whether the dock indicators are displayed in popups instead of the dock
+   * indicator layer.
+   */
+  private boolean useIndicatorPopups = false;
 
   /**
    * The grid pane used to lay out the local dock indicator buttons. This is the
@@ -132,9 +167,9 @@ public class DockPane extends StackPane
    */
   private GridPane dockPosIndicator;
   /**
-   * The popup used to display the local dock indicator buttons. This allows
-   * these indicator buttons to be displayed outside the window of this dock
-   * pane.
+   * The popup used to display the local dock indicator buttons when indicator
+   * popups are used, null otherwise. This allows these indicator buttons to be
+   * displayed outside the window of this dock pane.
    */
   private Popup dockIndicatorPopup;
 
@@ -220,6 +255,49 @@ public class DockPane extends StackPane
    */
   private ObservableList<DockPosButton> dockPosButtons;
 
+  /**
+   * The indicator button the mouse is currently over during a drag.
+   */
+  private DockPosButton hoveredDockPosButton;
+
+  /**
+   * CSS pseudo class selector highlighting the indicator button the mouse is
+   * over.
+   */
+  private static final PseudoClass FOCUSED_PSEUDO_CLASS =
+                                                        PseudoClass.getPseudoClass("focused");
+
+  /**
+   * The drop zones of this dock pane captured during the current drag so that
+   * dock over events do not have to transform the dock nodes and indicator
+   * buttons to the screen again.
+   */
+  private final DockDropZones dropZones = new DockDropZones(this);
+
+  /**
+   * The stages reused by the dock nodes of this dock pane when they float.
+   */
+  private final DockStagePool floatingStagePool = new DockStagePool(this);
+
+  /**
+   * The content pane containing each dock node and content pane of the layout
+   * of this dock pane, so docking next to a sibling does not have to search
+   * the layout for its parent.
+   */
+  private final ContentParentIndex contentParents = new ContentParentIndex();
+
+  /**
+   * The number of nested batches currently running.
+   */
+  private int batchDepth = 0;
+
+  /**
+   * The listeners notified with the latency statistics of each drag of a dock
+   * node of this dock pane.
+   */
+  private final List<Consumer<DragStatistics>> dragStatisticsListeners =
+                                                                      new ArrayList<>();
+
   private ObservableList<DockNode> undockedNodes;
 
   /**
@@ -244,19 +322,13 @@ public class DockPane extends StackPane
         }
         else if (event.getEventType() == DockEvent.DOCK_OVER)
         {
-          DockPane.this.dockNodeDrag = null;
+          DockPane.this.dockNodeDrag = dockNodeAt(event.getTarget());
         }
       }
 
     });
 
-    dockIndicatorPopup = new Popup();
-    dockIndicatorPopup.setAutoFix(false);
-
-    dockIndicatorOverlay = new Popup();
-    dockIndicatorOverlay.setAutoFix(false);
-
-    StackPane dockRootPane = new StackPane();
+    dockRootPane = new StackPane();
     dockRootPane.prefWidthProperty().bind(this.widthProperty());
     dockRootPane.prefHeightProperty().bind(this.heightProperty());
 
@@ -275,7 +347,8 @@ public class DockPane extends StackPane
                              12);
     KeyFrame kf = new KeyFrame(Duration.millis(500), kv);
     dockAreaStrokeTimeline.getKeyFrames().add(kf);
-    dockAreaStrokeTimeline.play();
+    // the timeline only runs while the indicators are shown so that the pulse
+    // can go idle when nothing is dragged
 
     DockPosButton dockCenter =
                              new DockPosButton(false, DockPos.CENTER);
@@ -334,8 +407,14 @@ public class DockPane extends StackPane
                                       dockBottomRoot,
                                       dockLeftRoot);
 
-    dockIndicatorOverlay.getContent().add(dockRootPane);
-    dockIndicatorPopup.getContent().addAll(dockPosIndicator);
+    // the layer is not managed so it is not laid out inside of the padding
+    // of this dock pane and its origin is the origin of this dock pane
+    dockIndicatorLayer = new Pane();
+    dockIndicatorLayer.setManaged(false);
+    dockIndicatorLayer.setMouseTransparent(true);
+    dockIndicatorLayer.setVisible(false);
+    this.getChildren().add(dockIndicatorLayer);
+    attachIndicators();
 
     this.getStyleClass().add("dock-pane");
     dockRootPane.getStyleClass().add("dock-root-pane");
@@ -343,6 +422,24 @@ public class DockPane extends StackPane
     dockAreaIndicator.getStyleClass().add("dock-area-indicator");
 
     undockedNodes = FXCollections.observableArrayList();
+
+    // the dock targets of a scene change whenever this dock pane enters or
+    // leaves it
+    this.sceneProperty().addListener(new ChangeListener<Scene>()
+    {
+      @Override
+      public void changed(ObservableValue<? extends Scene> observable,
+                          Scene oldValue,
+                          Scene newValue)
+      {
+        DockTargetIndex.invalidate(oldValue);
+        DockTargetIndex.invalidate(newValue);
+      }
+    });
+
+    // dragged dock nodes look for the windows that can accept them in the
+    // registry
+    DockPaneRegistry.register(this);
   }
 
   /**
@@ -369,9 +466,185 @@ public class DockPane extends StackPane
     this.exclusive = exclusive;
   }
 
+  /**
+   * Indicates whether the dock nodes of this dock pane coalesce mouse drag
+   * events (the default). In coalescing mode only the latest mouse location is
+   * processed once per pulse, otherwise every mouse drag event moves the
+   * dragged stage and picks the dock target immediately.
+   *
+   * @return true or false.
+   */
+  public boolean isCoalescingDragEvents()
+  {
+    return coalescingDragEvents;
+  }
+
+  /**
+   * Enables/disables the coalescing of mouse drag events.
+   *
+   * @param coalescingDragEvents
+   *          true for processing the latest mouse location once per pulse,
+   *          false for processing every mouse drag event immediately.
+   */
+  public void setCoalescingDragEvents(boolean coalescingDragEvents)
+  {
+    this.coalescingDragEvents = coalescingDragEvents;
+  }
+
+  /**
+   * Indicates whether the dock nodes of this dock pane are dragged as an
+   * outline. In outline mode a dragged dock node stays docked while a
+   * translucent outline follows the mouse, and a floating stage is only
+   * created when the node is dropped outside of any dock pane. Otherwise (the
+   * default) a dock node becomes floating as soon as it is dragged.
+   *
+   * @return true or false.
+   */
+  public boolean isOutlineDragging()
+  {
+    return outlineDragging;
+  }
+
+  /**
+   * Enables/disables dragging dock nodes as an outline.
+   *
+   * @param outlineDragging
+   *          true for dragging an outline of the dock node, false for floating
+   *          the dock node as soon as it is dragged.
+   */
+  public void setOutlineDragging(boolean outlineDragging)
+  {
+    this.outlineDragging = outlineDragging;
+  }
+
+  /**
+   * Add a listener that is notified with the latency statistics of every drag
+   * of a dock node of this dock pane once the dock node is dropped. Latencies
+   * are only measured while this dock pane has at least one listener.
+   *
+   * @param listener
+   *          The listener that is to be added.
+   */
+  public void addDragStatisticsListener(Consumer<DragStatistics> listener)
+  {
+    dragStatisticsListeners.add(listener);
+  }
+
+  /**
+   * Remove a listener added by
+   * {@link #addDragStatisticsListener(Consumer)}.
+   *
+   * @param listener
+   *          The listener that is to be removed.
+   */
+  public void removeDragStatisticsListener(Consumer<DragStatistics> listener)
+  {
+    dragStatisticsListeners.remove(listener);
+  }
+
+  /**
+   * Whether drags of the dock nodes of this dock pane have to be measured.
+   *
+   * @return Whether this dock pane has drag statistics listeners.
+   */
+  boolean isRecordingDragStatistics()
+  {
+    return !dragStatisticsListeners.isEmpty();
+  }
+
+  /**
+   * Notify the drag statistics listeners of a finished drag.
+   *
+   * @param dragStatistics
+   *          The statistics of the finished drag.
+   */
+  void fireDragStatistics(DragStatistics dragStatistics)
+  {
+    // listeners may remove themselves when notified
+    List<Consumer<DragStatistics>> listeners =
+                                             new ArrayList<>(dragStatisticsListeners);
+    for (Consumer<DragStatistics> listener : listeners)
+    {
+      listener.accept(dragStatistics);
+    }
+  }
+
+  /**
+   * Indicates whether the dock indicators of this dock pane are displayed in
+   * popups. By default they are displayed in a layer on top of the layout of
+   * this dock pane inside of its own scene, which avoids showing and moving
+   * native windows while dragging. Popups allow the indicators to extend
+   * beyond the window of this dock pane.
+   *
+   * @return true or false.
+   */
+  public boolean isUseIndicatorPopups()
+  {
+    return useIndicatorPopups;
+  }
+
+  /**
+   * Enables/disables displaying the dock indicators in popups.
+   *
+   * @param useIndicatorPopups
+   *          true for displaying the dock indicators in popups, false for
+   *          displaying them inside of the scene of this dock pane.
+   */
+  public void setUseIndicatorPopups(boolean useIndicatorPopups)
+  {
+    if (this.useIndicatorPopups == useIndicatorPopups)
+      return;
+
+    hideIndicators();
+    this.useIndicatorPopups = useIndicatorPopups;
+    attachIndicators();
+    dropZones.invalidate();
+  }
+
+  /**
+   * Create a floating stage of the given style ahead of time so that the first
+   * dock node torn off from this dock pane does not have to wait for it. The
+   * stage is kept until a dock node floats, even when unused floating stages
+   * are closed after being idle. This dock pane has to be shown in a window.
+   *
+   * @param stageStyle
+   *          The stage style the dock nodes of this dock pane use when they
+   *          float.
+   */
+  public void prewarmFloatingStage(StageStyle stageStyle)
+  {
+    floatingStagePool.prewarm(stageStyle);
+  }
+
+  /**
+   * A hidden stage of the given style for a dock node of this dock pane that
+   * starts floating, reused from an earlier floating dock node if possible.
+   *
+   * @param stageStyle
+   *          The stage style of the dock node.
+   * @return A hidden stage whose scene root is an empty border pane.
+   */
+  Stage acquireFloatingStage(StageStyle stageStyle)
+  {
+    return floatingStagePool.acquire(stageStyle);
+  }
+
+  /**
+   * Hide the stage of a dock node that stopped floating and keep it for the
+   * next dock node that floats.
+   *
+   * @param stage
+   *          The stage obtained from {@link #acquireFloatingStage(StageStyle)}.
+   */
+  void releaseFloatingStage(Stage stage)
+  {
+    floatingStagePool.release(stage);
+  }
+
   /**
    * The Timeline used to animate the docking area indicator in the dock
-   * indicator overlay for this dock pane.
+   * indicator overlay for this dock pane. It is played when a dock node is
+   * dragged into this dock pane and stopped when it leaves or is released.
    *
    * @return The Timeline used to animate the docking area indicator in the dock
    *         indicator overlay for this dock pane.
@@ -404,48 +677,26 @@ public class DockPane extends StackPane
   }
 
   /**
-   * A cache of all dock node event handlers that we have created for tracking
-   * the current docking area.
-   */
-  private ObservableMap<Node, DockNodeEventHandler> dockNodeEventFilters =
-                                                                         FXCollections.observableHashMap();
-
-  /**
-   * A wrapper to the type parameterized generic EventHandler that allows us to
-   * remove it from its listener when the dock node becomes detached. It is
-   * specifically used to monitor which dock node in this dock pane's layout we
-   * are currently dragging over.
+   * Find the docked node of this dock pane under the target of a dock event by
+   * walking up from the target, so that docked nodes need no event filters.
    *
-   * @since DockFX 0.1
+   * @param target
+   *          The target of the dock event.
+   * @return The innermost docked node containing the target or null if the
+   *         target is outside of all docked nodes.
    */
-  private class DockNodeEventHandler implements
-                                     EventHandler<DockEvent>
+  private Node dockNodeAt(EventTarget target)
   {
+    if (!(target instanceof Node))
+      return null;
 
-    /**
-     * The node associated with this event handler that reports to the
-     * encapsulating dock pane.
-     */
-    private Node node = null;
-
-    /**
-     * Creates a default dock node event handler that will help this dock pane
-     * track the current docking area.
-     *
-     * @param node
-     *          The node that is to listen for docking events and report to the
-     *          encapsulating docking pane.
-     */
-    public DockNodeEventHandler(Node node)
-    {
-      this.node = node;
-    }
-
-    @Override
-    public void handle(DockEvent event)
+    for (Node node = (Node) target; node != null
+                                    && node != this; node = node.getParent())
     {
-      DockPane.this.dockNodeDrag = node;
+      if (node instanceof DockNode && contentParents.contains(node))
+        return node;
     }
+    return null;
   }
 
   /**
@@ -462,25 +713,18 @@ public class DockPane extends StackPane
    */
   void dock(Node node, DockPos dockPos, Node sibling)
   {
-    DockNodeEventHandler dockNodeEventHandler =
-                                              new DockNodeEventHandler(node);
-    dockNodeEventFilters.put(node, dockNodeEventHandler);
-    node.addEventFilter(DockEvent.DOCK_OVER, dockNodeEventHandler);
-
     ContentPane pane = (ContentPane) root;
     if (pane == null)
     {
       pane = new ContentSplitPane(node);
-      root = (Node) pane;
-      this.getChildren().add(root);
+      setRoot((Node) pane);
+      layoutChanged();
       return;
     }
 
     if (sibling != null && sibling != root)
     {
-      Stack<Parent> stack = new Stack<>();
-      stack.push((Parent) root);
-      pane = pane.getSiblingParent(stack, sibling);
+      pane = contentParents.getParent(sibling);
     }
 
     if (pane == null)
@@ -500,17 +744,15 @@ public class DockPane extends StackPane
           DockNode siblingNode = (DockNode) sibling;
           DockNode newNode = (DockNode) node;
 
-          ContentTabPane tabPane = new ContentTabPane();
+          ContentTabPane tabPane = createTabPane();
 
           tabPane.addDockNodeTab(new DockNodeTab(siblingNode));
           tabPane.addDockNodeTab(new DockNodeTab(newNode));
 
           tabPane.setContentParent(pane);
 
-          double[] pos =
-                       ((ContentSplitPane) pane).getDividerPositions();
+          // the tab pane takes over the weight of the sibling
           pane.set(sibling, tabPane);
-          ((ContentSplitPane) pane).setDividerPositions(pos);
         }
       }
       else
@@ -526,7 +768,7 @@ public class DockPane extends StackPane
           {
             // If we are docking into a DockNode, make a ContentTabPane of the
             // two
-            ContentTabPane tabPane = new ContentTabPane();
+            ContentTabPane tabPane = createTabPane();
             tabPane.addNode(root, null, child, DockPos.CENTER);
             siblingSplitPane.set(child, tabPane);
             tabPane.setContentParent(siblingSplitPane);
@@ -568,10 +810,8 @@ public class DockPane extends StackPane
 
             if (split == root && sibling == root)
             {
-              this.getChildren().set(this.getChildren().indexOf(root),
-                                     splitPane);
               splitPane.getItems().add(split);
-              root = splitPane;
+              setRoot(splitPane);
             }
             else
             {
@@ -600,10 +840,8 @@ public class DockPane extends StackPane
             ContentSplitPane splitPane = new ContentSplitPane();
             if (split == root && sibling == root)
             {
-              this.getChildren().set(this.getChildren().indexOf(root),
-                                     splitPane);
               splitPane.getItems().add(split);
-              root = splitPane;
+              setRoot(splitPane);
             }
             else
             {
@@ -644,6 +882,9 @@ public class DockPane extends StackPane
     {
       undockedNodes.remove(node);
     }
+
+    normalize(contentParents.getParent(node));
+    layoutChanged();
   }
 
   /**
@@ -672,138 +913,719 @@ public class DockPane extends StackPane
     if (!node.closedProperty().get())
       undockedNodes.add(node);
 
-    DockNodeEventHandler dockNodeEventHandler =
-                                              dockNodeEventFilters.get(node);
-    node.removeEventFilter(DockEvent.DOCK_OVER, dockNodeEventHandler);
-    dockNodeEventFilters.remove(node);
-
-    // depth first search to find the parent of the node
-    Stack<Parent> findStack = new Stack<Parent>();
-    findStack.push((Parent) root);
+    // the node is removed from its parent and only the panes on the path up
+    // to the root are compacted, the rest of the layout is left untouched
+    ContentPane pane = contentParents.getParent(node);
+    if (pane != null)
+    {
+      removeChild(pane, node);
+    }
 
-    while (!findStack.isEmpty())
+    while (pane != null)
     {
-      Parent parent = findStack.pop();
+      ContentPane parent = contentParents.getParent((Node) pane);
+      List<Node> children = pane.getChildrenList();
 
-      if (parent instanceof ContentPane)
+      if (children.isEmpty())
       {
-        ContentPane pane = (ContentPane) parent;
-        pane.removeNode(findStack, node);
-
-        // if there is 0 children left, make sure we remove the split pane
-        if (pane.getChildrenList().isEmpty())
+        // if there is 0 children left, make sure we remove the pane
+        if (root == pane)
         {
-          if (root == pane)
-          {
-            this.getChildren().remove((Node) pane);
-            root = null;
-          }
+          setRoot(null);
         }
-        else if (pane.getChildrenList().size() == 1
-                 && pane instanceof ContentTabPane
-                 && pane.getChildrenList().get(0) instanceof DockNode)
+        if (parent == null)
         {
-          // if there is only 1-tab left, we replace it with the SplitPane
+          pane = null;
+          break;
+        }
 
-          List<Node> children = pane.getChildrenList();
-          Node sibling = children.get(0);
-          ContentPane contentParent = pane.getContentParent();
+        removeChild(parent, (Node) pane);
+        pane = parent;
+      }
+      else if (children.size() == 1 && pane instanceof ContentTabPane
+               && children.get(0) instanceof DockNode && parent != null)
+      {
+        // if there is only 1-tab left, we replace it with the SplitPane
+        Node sibling = children.get(0);
+        parent.set((Node) pane, sibling);
+        ((DockNode) sibling).tabbedProperty().setValue(false);
+        pane = parent;
+        break;
+      }
+      else
+      {
+        break;
+      }
+    }
 
-          contentParent.set((Node) pane, sibling);
-          ((DockNode) sibling).tabbedProperty().setValue(false);
-        }
+    // the pane that lost a child may have become a redundant wrapper
+    normalize(pane);
+    layoutChanged();
+  }
+
+  /**
+   * Normalize the split panes from the given pane up to the root of the
+   * layout, so that the layout is never deeper than needed. Split panes with
+   * a single item are replaced by their item and split panes nested in a split
+   * pane of the same orientation are merged into it, sharing the space of the
+   * nested pane between its items by their weights. During a batch the whole
+   * layout is normalized once when the batch is committed.
+   *
+   * @param pane
+   *          The pane whose children changed.
+   */
+  private void normalize(ContentPane pane)
+  {
+    if (batchDepth > 0)
+      return;
+
+    while (pane != null)
+    {
+      ContentPane parent = contentParents.getParent((Node) pane);
+      if (pane instanceof ContentSplitPane)
+      {
+        normalizeSplit((ContentSplitPane) pane);
       }
+      pane = parent;
     }
+    normalizeRoot();
+  }
 
+  /**
+   * Normalize all split panes of the layout.
+   *
+   * @param node
+   *          The node whose split panes are normalized bottom up.
+   */
+  private void normalizeTree(Node node)
+  {
+    if (node instanceof ContentSplitPane)
+    {
+      ContentSplitPane splitPane = (ContentSplitPane) node;
+      for (Node item : new ArrayList<>(splitPane.getItems()))
+      {
+        normalizeTree(item);
+      }
+      normalizeSplit(splitPane);
+    }
   }
 
-  public void removeFloatingNodeFromUndockNodes(DockNode n)
+  /**
+   * Replace a root split pane that only holds another split pane by the latter.
+   */
+  private void normalizeRoot()
   {
-    undockedNodes.remove(n);
+    while (root instanceof ContentSplitPane
+           && ((ContentSplitPane) root).getItems().size() == 1
+           && ((ContentSplitPane) root).getItems()
+                                       .get(0) instanceof ContentSplitPane)
+    {
+      ContentSplitPane oldRoot = (ContentSplitPane) root;
+      ContentSplitPane newRoot = (ContentSplitPane) oldRoot.getItems().get(0);
+      setRoot(newRoot);
+      newRoot.setContentParent(null);
+      oldRoot.getItems().clear();
+    }
   }
 
-  @Override
-  public void handle(DockEvent event)
+  /**
+   * Merge the redundant split panes among the items of a split pane into it.
+   *
+   * @param splitPane
+   *          The split pane whose items are normalized.
+   */
+  private static void normalizeSplit(ContentSplitPane splitPane)
   {
-    // handle exclusive mode.
-    DockPane otherPane =
-                       ((DockNode) event.getContents()).getDockPane();
+    List<Node> items = splitPane.getItems();
+    double[] weights = weightsOf(splitPane);
 
-    if (otherPane != this)
+    boolean redundant = false;
+    for (Node item : items)
     {
-      if (isExclusive())
+      if (isRedundant(splitPane, item))
       {
-        // Can't accept nodes from other dock panes.
-        return;
+        redundant = true;
+        break;
       }
+    }
+    if (!redundant)
+      return;
 
-      if (otherPane != null && otherPane.isExclusive())
+    List<Node> newItems = new ArrayList<>();
+    List<Double> newWeights = new ArrayList<>();
+    List<ContentSplitPane> mergedPanes = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++)
+    {
+      flatten(splitPane,
+              items.get(i),
+              weights[i],
+              newItems,
+              newWeights,
+              mergedPanes);
+    }
+
+    DockLayoutReconciler.patch(splitPane.getItems(), newItems);
+    for (Node item : newItems)
+    {
+      if (item instanceof ContentPane)
       {
-        // Nodes from the other pane cannot be docked elsewhere.
-        return;
+        ((ContentPane) item).setContentParent(splitPane);
       }
     }
 
-    if (event.getEventType() == DockEvent.DOCK_ENTER)
+    // the merged panes let go of the items that moved into the split pane
+    for (ContentSplitPane mergedPane : mergedPanes)
     {
-      if (!dockIndicatorOverlay.isShowing())
-      {
-        Point2D originToScreen;
-        if (null != root)
-        {
-          originToScreen = root.localToScreen(0, 0);
-        }
-        else
-        {
-          originToScreen = this.localToScreen(0, 0);
-        }
+      mergedPane.getItems().clear();
+      mergedPane.setContentParent(null);
+    }
 
-        dockIndicatorOverlay.show(DockPane.this,
-                                  originToScreen.getX(),
-                                  originToScreen.getY());
+    if (newItems.size() > 1)
+    {
+      double[] positions = new double[newItems.size() - 1];
+      double total = 0, position = 0;
+      for (double weight : newWeights)
+      {
+        total += weight;
+      }
+      for (int i = 0; i < positions.length; i++)
+      {
+        position += total > 0 ? newWeights.get(i) / total
+                              : 1.0 / newItems.size();
+        positions[i] = position;
       }
+      splitPane.setDividerPositions(positions);
     }
-    else if (event.getEventType() == DockEvent.DOCK_OVER)
+  }
+
+  private static void flatten(ContentSplitPane splitPane,
+                              Node item,
+                              double weight,
+                              List<Node> newItems,
+                              List<Double> newWeights,
+                              List<ContentSplitPane> mergedPanes)
+  {
+    if (!isRedundant(splitPane, item))
     {
-      this.receivedEnter = false;
+      newItems.add(item);
+      newWeights.add(weight);
+      return;
+    }
 
-      dockPosDrag = null;
-      dockAreaDrag = dockNodeDrag;
+    // the items of a redundant pane share the space of the pane
+    ContentSplitPane nested = (ContentSplitPane) item;
+    List<Node> nestedItems = nested.getItems();
+    double[] nestedWeights = weightsOf(nested);
+    mergedPanes.add(nested);
+    for (int i = 0; i < nestedItems.size(); i++)
+    {
+      flatten(splitPane,
+              nestedItems.get(i),
+              weight * nestedWeights[i],
+              newItems,
+              newWeights,
+              mergedPanes);
+    }
+  }
+
+  /**
+   * Whether an item of a split pane is a split pane that can be merged into
+   * it, since it holds less than two items or has the same orientation.
+   */
+  private static boolean isRedundant(ContentSplitPane splitPane, Node item)
+  {
+    if (!(item instanceof ContentSplitPane))
+      return false;
+
+    ContentSplitPane nested = (ContentSplitPane) item;
+    return nested.getItems().size() < 2
+           || nested.getOrientation() == splitPane.getOrientation();
+  }
+
+  /**
+   * The share of the space of each item of a split pane.
+   */
+  private static double[] weightsOf(ContentSplitPane splitPane)
+  {
+    int count = splitPane.getItems().size();
+    double[] positions = splitPane.getDividerPositions();
+    if (positions.length == count - 1 && count > 0)
+      return DockLayout.Split.toWeights(positions);
+
+    double[] weights = new double[count];
+    Arrays.fill(weights, 1.0 / Math.max(1, count));
+    return weights;
+  }
 
-      for (DockPosButton dockIndicatorButton : dockPosButtons)
+  /**
+   * Remove a dock node or content pane from the content pane containing it.
+   *
+   * @param pane
+   *          The content pane containing the node.
+   * @param node
+   *          The node that is to be removed.
+   */
+  private static void removeChild(ContentPane pane, Node node)
+  {
+    if (pane instanceof ContentSplitPane)
+    {
+      ((ContentSplitPane) pane).getItems().remove(node);
+    }
+    else
+    {
+      List<Tab> tabs = ((ContentTabPane) pane).getTabs();
+      for (int i = 0; i < tabs.size(); i++)
       {
-        if (dockIndicatorButton.contains(dockIndicatorButton.screenToLocal(event.getScreenX(),
-                                                                           event.getScreenY())))
+        if (tabs.get(i).getContent() == node)
         {
-          dockPosDrag = dockIndicatorButton.getDockPos();
-          if (dockIndicatorButton.isDockRoot())
-          {
-            dockAreaDrag = root;
-          }
-          dockIndicatorButton.pseudoClassStateChanged(PseudoClass.getPseudoClass("focused"),
-                                                      true);
+          tabs.remove(i);
           break;
         }
-        else
-        {
-          dockIndicatorButton.pseudoClassStateChanged(PseudoClass.getPseudoClass("focused"),
-                                                      false);
-        }
       }
-
+    }
+  }
+
+  public void removeFloatingNodeFromUndockNodes(DockNode n)
+  {
+    undockedNodes.remove(n);
+  }
+
+  /**
+   * Run changes to the layout of this dock pane as a single transaction. The
+   * layout stays in the scene while the changes run, but this dock pane holds
+   * back its layout requests, so the divider positions of the split panes and
+   * the layout of the changed panes are computed once, and the layout is
+   * normalized and the dock targets of the scene are invalidated once when the
+   * outermost batch ends. A root created during the batch, for instance when
+   * the first node is docked, is built off the scene and attached when the
+   * batch ends.
+   *
+   * @param changes
+   *          The changes to the layout, for instance docking several nodes.
+   */
+  public void batch(Runnable changes)
+  {
+    batchDepth++;
+    try
+    {
+      changes.run();
+    }
+    finally
+    {
+      if (--batchDepth == 0)
+      {
+        commitBatch();
+      }
+    }
+  }
+
+  /**
+   * Indicates whether a batch of changes is currently running.
+   *
+   * @return true or false.
+   */
+  public boolean isBatching()
+  {
+    return batchDepth > 0;
+  }
+
+  /**
+   * Dock many dock nodes at once, for instance to build the initial layout of
+   * an application. The nodes are docked in order as a single batch, so the
+   * layout is laid out once, and built off the scene if this dock pane is
+   * empty. A placement may use a node docked by an earlier placement as its
+   * sibling.
+   *
+   * @param placements
+   *          Where to dock each dock node.
+   */
+  public void dockAll(final List<DockPlacement> placements)
+  {
+    batch(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for (DockPlacement placement : placements)
+        {
+          placement.getDockNode().dock(DockPane.this,
+                                       placement.getDockPos(),
+                                       placement.getSibling());
+        }
+      }
+    });
+  }
+
+  /**
+   * Dock many dock nodes at once.
+   *
+   * @param placements
+   *          Where to dock each dock node.
+   * @see #dockAll(List)
+   */
+  public void dockAll(DockPlacement... placements)
+  {
+    dockAll(Arrays.asList(placements));
+  }
+
+  private void commitBatch()
+  {
+    normalizeTree(root);
+    normalizeRoot();
+
+    if (root != null && root.getParent() != this)
+    {
+      // the root goes below the dock indicator layer
+      this.getChildren().add(0, root);
+    }
+    layoutChanged();
+    requestLayout();
+  }
+
+  @Override
+  public void requestLayout()
+  {
+    // the layout requests of the changes made during a batch are merged into
+    // the one made when the batch is committed
+    if (batchDepth > 0)
+      return;
+
+    super.requestLayout();
+  }
+
+  /**
+   * Replace the root of the layout of this dock pane.
+   *
+   * @param newRoot
+   *          The new root or null if no node is docked.
+   */
+  private void setRoot(Node newRoot)
+  {
+    if (newRoot == root)
+      return;
+
+    // a replaced root is swapped in place so that the dock pane never loses
+    // its root during a batch, only a root without a previous position is
+    // attached when the batch is committed
+    int index = root != null ? this.getChildren().indexOf(root) : -1;
+    if (index >= 0 && newRoot == null)
+    {
+      this.getChildren().remove(index);
+    }
+    else if (index >= 0)
+    {
+      this.getChildren().set(index, newRoot);
+    }
+    else if (newRoot != null && batchDepth == 0)
+    {
+      // the root goes below the dock indicator layer
+      this.getChildren().add(0, newRoot);
+    }
+
+    root = newRoot;
+    contentParents.setRoot(newRoot);
+  }
+
+  /**
+   * Invalidate the dock targets of the scene after the layout changed, which
+   * is deferred to the end of a batch.
+   */
+  private void layoutChanged()
+  {
+    if (batchDepth == 0)
+    {
+      DockTargetIndex.invalidate(getScene());
+    }
+  }
+
+  /**
+   * The policy for the contents of the tabs that are not selected in the tab
+   * panes of this dock pane, which is applied to every tab pane this dock pane
+   * creates. Detaching the contents of hidden tabs from the scene graph keeps
+   * large tabbed layouts from styling and laying out what cannot be seen.
+   *
+   * @defaultValue KEEP_ATTACHED
+   * @see ContentTabPane#detachPolicyProperty()
+   */
+  public final ObjectProperty<ContentTabPane.DetachPolicy> detachPolicyProperty()
+  {
+    return detachPolicy;
+  }
+
+  private final ObjectProperty<ContentTabPane.DetachPolicy> detachPolicy =
+                                                                         new SimpleObjectProperty<>(this,
+                                                                                                    "detachPolicy",
+                                                                                                    ContentTabPane.DetachPolicy.KEEP_ATTACHED);
+
+  public final ContentTabPane.DetachPolicy getDetachPolicy()
+  {
+    return detachPolicy.get();
+  }
+
+  public final void setDetachPolicy(ContentTabPane.DetachPolicy policy)
+  {
+    detachPolicy.set(policy);
+  }
+
+  /**
+   * How long a tab has not been selected before its contents are detached
+   * with {@link ContentTabPane.DetachPolicy#DETACH_AFTER_TIMEOUT}, which is
+   * applied to every tab pane this dock pane creates.
+   *
+   * @defaultValue 30 seconds
+   * @see ContentTabPane#detachTimeoutProperty()
+   */
+  public final ObjectProperty<Duration> detachTimeoutProperty()
+  {
+    return detachTimeout;
+  }
+
+  private final ObjectProperty<Duration> detachTimeout =
+                                                       new SimpleObjectProperty<>(this,
+                                                                                  "detachTimeout",
+                                                                                  Duration.seconds(30));
+
+  public final Duration getDetachTimeout()
+  {
+    return detachTimeout.get();
+  }
+
+  public final void setDetachTimeout(Duration timeout)
+  {
+    detachTimeout.set(timeout);
+  }
+
+  /**
+   * Create a tab pane for the layout of this dock pane, which follows the
+   * detach policy and timeout of this dock pane.
+   *
+   * @return The new tab pane.
+   */
+  ContentTabPane createTabPane()
+  {
+    ContentTabPane tabPane = new ContentTabPane();
+    tabPane.detachPolicyProperty().bind(detachPolicy);
+    tabPane.detachTimeoutProperty().bind(detachTimeout);
+    return tabPane;
+  }
+
+  /**
+   * Take a snapshot of the layout of the docked nodes of this dock pane.
+   *
+   * @return The current layout or null if no node is docked.
+   */
+  public DockLayout getDockLayout()
+  {
+    return root != null ? DockLayout.of(root) : null;
+  }
+
+  /**
+   * Switch this dock pane to another layout. Only the differences between the
+   * current and the new layout are applied to the scene graph, the split
+   * panes, tab panes and dock nodes that stay in place are left untouched.
+   * Dock nodes that enter the layout are docked into this dock pane, leaving
+   * their stage or dock pane, and docked nodes that are not part of the new
+   * layout are floated.
+   *
+   * @param layout
+   *          The new layout or null for docking no nodes.
+   */
+  public void setDockLayout(DockLayout layout)
+  {
+    for (DockNode node : applyDockLayout(layout))
+    {
+      node.setFloating(true, null, this);
+    }
+  }
+
+  /**
+   * Apply a layout to the scene graph of this dock pane.
+   *
+   * @param layout
+   *          The new layout or null for docking no nodes.
+   * @return The dock nodes that were docked before and are no part of the new
+   *         layout, they are still marked as docked.
+   */
+  private List<DockNode> applyDockLayout(DockLayout layout)
+  {
+    List<DockNode> oldNodes = new ArrayList<>();
+    if (root != null)
+    {
+      DockLayout.of(root).collectDockNodes(oldNodes);
+    }
+    List<DockNode> newNodes = new ArrayList<>();
+    if (layout != null)
+    {
+      layout.collectDockNodes(newNodes);
+    }
+
+    // nodes entering the layout leave their stage or dock pane first
+    for (DockNode node : newNodes)
+    {
+      if (!contentParents.contains(node))
+      {
+        node.dockImpl(this);
+        undockedNodes.remove(node);
+      }
+    }
+
+    Node newRoot = null;
+    if (layout != null)
+    {
+      newRoot = new DockLayoutReconciler(this).reconcile(root, layout);
+    }
+
+    setRoot(newRoot);
+
+    List<DockNode> droppedNodes = new ArrayList<>();
+    for (DockNode node : oldNodes)
+    {
+      if (!contentParents.contains(node))
+      {
+        droppedNodes.add(node);
+      }
+    }
+
+    layoutChanged();
+    return droppedNodes;
+  }
+
+  @Override
+  public void handle(DockEvent event)
+  {
+    DragStatistics dragStatistics = null;
+    if (event.getEventType() == DockEvent.DOCK_ENTER
+        || event.getEventType() == DockEvent.DOCK_OVER)
+    {
+      DockTitleBar dockTitleBar =
+                                ((DockNode) event.getContents()).getDockTitleBar();
+      if (dockTitleBar != null)
+      {
+        dragStatistics = dockTitleBar.getDragStatistics();
+      }
+    }
+
+    if (dragStatistics == null)
+    {
+      handleDockEvent(event);
+      return;
+    }
+
+    long start = System.nanoTime();
+    handleDockEvent(event);
+    dragStatistics.getIndicatorLatency().record(System.nanoTime() - start);
+  }
+
+  private void handleDockEvent(DockEvent event)
+  {
+    // a dock node dragged as an outline is still docked and can not be docked
+    // into a dock pane that is part of its own content
+    DockNode draggedNode = (DockNode) event.getContents();
+    if (draggedNode.isDocked() && isDescendantOf(draggedNode))
+      return;
+
+    // handle exclusive mode.
+    DockPane otherPane = draggedNode.getDockPane();
+
+    if (otherPane != this)
+    {
+      if (isExclusive())
+      {
+        // Can't accept nodes from other dock panes.
+        return;
+      }
+
+      if (otherPane != null && otherPane.isExclusive())
+      {
+        // Nodes from the other pane cannot be docked elsewhere.
+        return;
+      }
+    }
+
+    if (event.getEventType() == DockEvent.DOCK_ENTER)
+    {
+      if (!isIndicatorShowing())
+      {
+        dockAreaStrokeTimeline.play();
+
+        if (useIndicatorPopups)
+        {
+          DockDropZones.Zone origin =
+                                    dropZones.zoneOf(null != root ? root
+                                                                  : this);
+          if (origin != null)
+          {
+            dockIndicatorOverlay.show(DockPane.this,
+                                      origin.getScreenX(),
+                                      origin.getScreenY());
+          }
+        }
+        else
+        {
+          if (null != root)
+          {
+            dockRootPane.relocate(root.getLayoutX(), root.getLayoutY());
+          }
+          else
+          {
+            dockRootPane.relocate(0, 0);
+          }
+          dockIndicatorLayer.setVisible(true);
+        }
+      }
+    }
+    else if (event.getEventType() == DockEvent.DOCK_OVER)
+    {
+      this.receivedEnter = false;
+
+      // the dock node dragged as an outline is no target for itself
+      if (dockNodeDrag == draggedNode)
+      {
+        dockNodeDrag = null;
+      }
+
+      dockPosDrag = null;
+      dockAreaDrag = dockNodeDrag;
+
+      DockPosButton dockPosButton =
+                                  dropZones.buttonAt(dockPosButtons,
+                                                     event.getScreenX(),
+                                                     event.getScreenY());
+      setHoveredDockPosButton(dockPosButton);
+      if (dockPosButton != null)
+      {
+        dockPosDrag = dockPosButton.getDockPos();
+        if (dockPosButton.isDockRoot())
+        {
+          dockAreaDrag = root;
+        }
+      }
+
+      DockDropZones.Zone dockArea = null;
       if (dockPosDrag != null && dockAreaDrag != null)
       {
-        Point2D originToScene = dockAreaDrag.localToScreen(0, 0);
+        dockArea = dropZones.zoneOf(dockAreaDrag);
+      }
+
+      DockDropZones.Zone indicatorOrigin = getIndicatorOrigin();
+      if (dockArea != null && indicatorOrigin != null)
+      {
+        // the root indicators are either shown in the overlay popup or in
+        // the indicator layer relative to the root
+        double anchorX = indicatorOrigin.getScreenX();
+        double anchorY = indicatorOrigin.getScreenY();
+        if (!useIndicatorPopups)
+        {
+          anchorX += dockRootPane.getLayoutX();
+          anchorY += dockRootPane.getLayoutY();
+        }
 
         dockAreaIndicator.setVisible(true);
-        dockAreaIndicator.relocate(originToScene.getX()
-                                   - dockIndicatorOverlay.getAnchorX(),
-                                   originToScene.getY() - dockIndicatorOverlay.getAnchorY());
+        dockAreaIndicator.relocate(dockArea.getScreenX() - anchorX,
+                                   dockArea.getScreenY() - anchorY);
         if (dockPosDrag == DockPos.RIGHT)
         {
-          dockAreaIndicator.setTranslateX(dockAreaDrag.getLayoutBounds()
-                                                      .getWidth()
-                                          / 2);
+          dockAreaIndicator.setTranslateX(dockArea.getWidth() / 2);
         }
         else
         {
@@ -812,9 +1634,7 @@ public class DockPane extends StackPane
 
         if (dockPosDrag == DockPos.BOTTOM)
         {
-          dockAreaIndicator.setTranslateY(dockAreaDrag.getLayoutBounds()
-                                                      .getHeight()
-                                          / 2);
+          dockAreaIndicator.setTranslateY(dockArea.getHeight() / 2);
         }
         else
         {
@@ -824,26 +1644,20 @@ public class DockPane extends StackPane
         if (dockPosDrag == DockPos.LEFT
             || dockPosDrag == DockPos.RIGHT)
         {
-          dockAreaIndicator.setWidth(dockAreaDrag.getLayoutBounds()
-                                                 .getWidth()
-                                     / 2);
+          dockAreaIndicator.setWidth(dockArea.getWidth() / 2);
         }
         else
         {
-          dockAreaIndicator.setWidth(dockAreaDrag.getLayoutBounds()
-                                                 .getWidth());
+          dockAreaIndicator.setWidth(dockArea.getWidth());
         }
         if (dockPosDrag == DockPos.TOP
             || dockPosDrag == DockPos.BOTTOM)
         {
-          dockAreaIndicator.setHeight(dockAreaDrag.getLayoutBounds()
-                                                  .getHeight()
-                                      / 2);
+          dockAreaIndicator.setHeight(dockArea.getHeight() / 2);
         }
         else
         {
-          dockAreaIndicator.setHeight(dockAreaDrag.getLayoutBounds()
-                                                  .getHeight());
+          dockAreaIndicator.setHeight(dockArea.getHeight());
         }
       }
       else
@@ -851,26 +1665,62 @@ public class DockPane extends StackPane
         dockAreaIndicator.setVisible(false);
       }
 
+      DockDropZones.Zone dockNodeArea = null;
       if (dockNodeDrag != null
           && ((DockNode) dockNodeDrag).getDockTitleBar() != null)
       {
-        Point2D originToScreen = dockNodeDrag.localToScreen(0, 0);
+        dockNodeArea = dropZones.zoneOf(dockNodeDrag);
+      }
 
-        double posX = originToScreen.getX()
-                      + dockNodeDrag.getLayoutBounds().getWidth() / 2
+      if (dockNodeArea != null
+          && (useIndicatorPopups || indicatorOrigin != null))
+      {
+        double posX = dockNodeArea.getScreenX()
+                      + dockNodeArea.getWidth() / 2
                       - dockPosIndicator.getWidth() / 2;
-        double posY = originToScreen.getY()
-                      + dockNodeDrag.getLayoutBounds().getHeight() / 2
+        double posY = dockNodeArea.getScreenY()
+                      + dockNodeArea.getHeight() / 2
                       - dockPosIndicator.getHeight() / 2;
 
-        if (!dockIndicatorPopup.isShowing())
+        if (useIndicatorPopups)
         {
-          dockIndicatorPopup.show(DockPane.this, posX, posY);
+          // keep the indicator on the screen of the dock node it is shown
+          // for, since the popup does not fix its position itself
+          Rectangle2D screen =
+                             ScreenTopology.getVisualBounds(dockNodeArea.getScreenX(),
+                                                            dockNodeArea.getScreenY(),
+                                                            dockNodeArea.getWidth(),
+                                                            dockNodeArea.getHeight());
+          posX = Math.max(screen.getMinX(),
+                          Math.min(posX,
+                                   screen.getMaxX()
+                                         - dockPosIndicator.getWidth()));
+          posY = Math.max(screen.getMinY(),
+                          Math.min(posY,
+                                   screen.getMaxY()
+                                         - dockPosIndicator.getHeight()));
+
+          if (!dockIndicatorPopup.isShowing())
+          {
+            dockIndicatorPopup.show(DockPane.this, posX, posY);
+          }
+          else
+          {
+            dockIndicatorPopup.setX(posX);
+            dockIndicatorPopup.setY(posY);
+          }
         }
         else
         {
-          dockIndicatorPopup.setX(posX);
-          dockIndicatorPopup.setY(posY);
+          double layoutX = posX - indicatorOrigin.getScreenX();
+          double layoutY = posY - indicatorOrigin.getScreenY();
+          if (layoutX != dockPosIndicator.getLayoutX()
+              || layoutY != dockPosIndicator.getLayoutY())
+          {
+            dockPosIndicator.relocate(layoutX, layoutY);
+            // the captured zones of the buttons moved along
+            dropZones.invalidateButtons();
+          }
         }
 
         // set visible after moving the popup
@@ -885,7 +1735,7 @@ public class DockPane extends StackPane
     if (event.getEventType() == DockEvent.DOCK_RELEASED
         && event.getContents() != null)
     {
-      if (dockPosDrag != null && dockIndicatorOverlay.isShowing())
+      if (dockPosDrag != null && isIndicatorShowing())
       {
         DockNode dockNode = (DockNode) event.getContents();
         dockNode.dock(this, dockPosDrag, dockAreaDrag);
@@ -895,6 +1745,66 @@ public class DockPane extends StackPane
     if ((event.getEventType() == DockEvent.DOCK_EXIT
          && !this.receivedEnter)
         || event.getEventType() == DockEvent.DOCK_RELEASED)
+    {
+      hideIndicators();
+      setHoveredDockPosButton(null);
+
+      // the next drag over this dock pane captures its drop zones again
+      dropZones.invalidate();
+    }
+  }
+
+  /**
+   * Highlight the indicator button the mouse is over, touching the visual
+   * state of the buttons only when it changes.
+   */
+  private void setHoveredDockPosButton(DockPosButton dockPosButton)
+  {
+    if (dockPosButton == hoveredDockPosButton)
+      return;
+
+    if (hoveredDockPosButton != null)
+    {
+      hoveredDockPosButton.pseudoClassStateChanged(FOCUSED_PSEUDO_CLASS,
+                                                   false);
+    }
+    if (dockPosButton != null)
+    {
+      dockPosButton.pseudoClassStateChanged(FOCUSED_PSEUDO_CLASS, true);
+    }
+    hoveredDockPosButton = dockPosButton;
+  }
+
+  /**
+   * Whether the dock indicators of this dock pane are currently shown.
+   */
+  private boolean isIndicatorShowing()
+  {
+    if (useIndicatorPopups)
+    {
+      return dockIndicatorOverlay.isShowing();
+    }
+    return dockIndicatorLayer.isVisible();
+  }
+
+  /**
+   * The zone whose origin the dock indicators are positioned relative to,
+   * which is the overlay popup or this dock pane.
+   */
+  private DockDropZones.Zone getIndicatorOrigin()
+  {
+    if (useIndicatorPopups)
+    {
+      return dropZones.zoneOf(dockRootPane);
+    }
+    return dropZones.zoneOf(this);
+  }
+
+  private void hideIndicators()
+  {
+    dockAreaStrokeTimeline.stop();
+
+    if (useIndicatorPopups)
     {
       if (dockIndicatorOverlay.isShowing())
       {
@@ -905,6 +1815,54 @@ public class DockPane extends StackPane
         dockIndicatorPopup.hide();
       }
     }
+    else
+    {
+      dockIndicatorLayer.setVisible(false);
+    }
+  }
+
+  /**
+   * Move the dock indicators into the popups or into the dock indicator layer,
+   * creating the popups the first time they are used.
+   */
+  private void attachIndicators()
+  {
+    if (useIndicatorPopups)
+    {
+      if (dockIndicatorOverlay == null)
+      {
+        dockIndicatorOverlay = new Popup();
+        dockIndicatorOverlay.setAutoFix(false);
+
+        dockIndicatorPopup = new Popup();
+        dockIndicatorPopup.setAutoFix(false);
+      }
+      dockIndicatorLayer.getChildren().clear();
+      dockIndicatorOverlay.getContent().add(dockRootPane);
+      dockIndicatorPopup.getContent().add(dockPosIndicator);
+    }
+    else
+    {
+      if (dockIndicatorOverlay != null)
+      {
+        dockIndicatorOverlay.getContent().clear();
+        dockIndicatorPopup.getContent().clear();
+      }
+      dockIndicatorLayer.getChildren().setAll(dockRootPane,
+                                              dockPosIndicator);
+    }
+  }
+
+  private boolean isDescendantOf(Node node)
+  {
+    Parent parent = getParent();
+    while (parent != null)
+    {
+      if (parent == node)
+        return true;
+      parent = parent.getParent();
+    }
+    return false;
   }
 
   public void storePreference(String filePath)
@@ -1114,7 +2072,10 @@ public class DockPane extends StackPane
       dockNodes.put(node.getTitle(), node);
     }
 
-    collectDockNodes(dockNodes, root);
+    if (root != null)
+    {
+      collectDockNodes(dockNodes, root);
+    }
 
     Double[] windowSize = (Double[]) contents.get("0")
                                              .getProperties()
@@ -1125,24 +2086,20 @@ public class DockPane extends StackPane
 
     Stage currentStage = (Stage) this.getScene().getWindow();
 
-    // In case that the current screen size is smaller than the size stored in
-    // the preference file,
-    // The below logic prevents from the window hidden in outside the current
-    // screen
-	Rectangle2D screen = Screen.getPrimary().getBounds();
-
-    if (windowPosition[0] > screen.getMaxX() || windowPosition[0] < screen.getMinX())
+    // In case that the screen the window was stored on is no longer
+    // available, the window is moved onto the nearest screen instead of
+    // being hidden outside of the current screens
+    Point2D windowLocation = new Point2D(windowPosition[0],
+                                         windowPosition[1]);
+    if (!ScreenTopology.isOnScreen(windowPosition[0], windowPosition[1]))
     {
-      windowPosition[0] = currentStage.getX();
+      windowLocation = ScreenTopology.clampToScreen(windowPosition[0],
+                                                    windowPosition[1],
+                                                    windowSize[0],
+                                                    windowSize[1]);
     }
-
-    if (windowPosition[1] > screen.getMaxY() || windowPosition[1] < screen.getMinY())
-    {
-      windowPosition[1] = currentStage.getY();
-    }
-
-    currentStage.setX(windowPosition[0]);
-    currentStage.setY(windowPosition[1]);
+    currentStage.setX(windowLocation.getX());
+    currentStage.setY(windowLocation.getY());
 
     currentStage.setWidth(windowSize[0]);
     currentStage.setHeight(windowSize[1]);
@@ -1166,8 +2123,18 @@ public class DockPane extends StackPane
       {
         node.setFloating(true, null, this);
 
-        node.getStage().setX(position[0]);
-        node.getStage().setY(position[1]);
+        // floating nodes stored on a screen that is no longer available are
+        // moved onto the nearest screen
+        Point2D location = new Point2D(position[0], position[1]);
+        if (!ScreenTopology.isOnScreen(position[0], position[1]))
+        {
+          location = ScreenTopology.clampToScreen(position[0],
+                                                  position[1],
+                                                  size[0],
+                                                  size[1]);
+        }
+        node.getStage().setX(location.getX());
+        node.getStage().setY(location.getY());
 
         node.getStage().setWidth(size[0]);
         node.getStage().setHeight(size[1]);
@@ -1182,13 +2149,10 @@ public class DockPane extends StackPane
       }
     }
 
-    // Restore dock location based on the preferences
-    // Make it sorted
+    // Restore dock location based on the preferences, only the differences
+    // to the current layout are applied
     ContentHolder rootHolder = contents.get("0");
-    Node newRoot = buildPane(null,
-                             rootHolder,
-                             dockNodes,
-                             delayOpenHandler);
+    applyDockLayout(buildLayout(rootHolder, dockNodes, delayOpenHandler));
 
     // We have new dock nodes to be added, otherwise we will lose the new nodes
     if (dockNodes.size() > 0)
@@ -1204,121 +2168,99 @@ public class DockPane extends StackPane
 
       dockNodes.clear();
     }
-
-    this.root = newRoot;
-    this.getChildren().set(0, this.root);
   }
 
-  private Node buildPane(ContentPane parent,
-                         ContentHolder holder,
-                         HashMap<String, DockNode> dockNodes,
-                         DelayOpenHandler delayOpenHandler)
+  private DockLayout buildLayout(ContentHolder holder,
+                                 HashMap<String, DockNode> dockNodes,
+                                 DelayOpenHandler delayOpenHandler)
   {
-    Node pane = null;
     if (holder.getType().equals(ContentHolder.Type.SplitPane))
     {
-      ContentSplitPane splitPane = new ContentSplitPane();
-      splitPane.setOrientation((Orientation) holder.getProperties()
-                                                   .get("Orientation"));
-      splitPane.setDividerPositions((double[]) holder.getProperties()
-                                                     .get("DividerPositions"));
-
+      List<DockLayout> children = new ArrayList<>();
       for (Object item : holder.getChildren())
       {
         if (item instanceof String)
         {
-          // Use dock node
-          if (dockNodes.containsKey(item))
+          DockNode node = takeDockNode((String) item,
+                                       dockNodes,
+                                       delayOpenHandler);
+          if (node != null)
           {
-            DockNode n = dockNodes.get(item);
-            if (n.tabbedProperty().get())
-            {
-              n.tabbedProperty().set(false);
-            }
-
-            splitPane.getItems().add(dockNodes.get(item));
-            dockNodes.remove(item);
-          }
-          else
-          {
-            // If delayOpenHandler is provided, we call it
-            if (delayOpenHandler != null)
-            {
-              DockNode newNode = delayOpenHandler.open((String) item);
-              if (null != newNode)
-              {
-                if (newNode.tabbedProperty().get())
-                {
-                  newNode.tabbedProperty().set(false);
-                }
-                newNode.dockedProperty().set(true);
-                splitPane.getItems().add(newNode);
-              }
-            }
-            else
-              System.err.println(item + " is not present.");
+            children.add(DockLayout.leaf(node));
           }
         }
         else if (item instanceof ContentHolder)
         {
           // Call this function recursively
-          splitPane.getItems()
-                   .add(buildPane(splitPane,
-                                  (ContentHolder) item,
-                                  dockNodes,
-                                  delayOpenHandler));
+          DockLayout child = buildLayout((ContentHolder) item,
+                                         dockNodes,
+                                         delayOpenHandler);
+          if (child != null)
+          {
+            children.add(child);
+          }
         }
       }
-      if (parent != null)
-        splitPane.setContentParent(parent);
-      pane = splitPane;
+
+      // the stored divider positions only apply if no node went missing
+      double[] weights = new double[0];
+      double[] positions = (double[]) holder.getProperties()
+                                            .get("DividerPositions");
+      if (positions != null && !children.isEmpty()
+          && positions.length >= children.size() - 1)
+      {
+        positions = Arrays.copyOf(positions, children.size() - 1);
+        weights = DockLayout.Split.toWeights(positions);
+      }
+
+      return DockLayout.split((Orientation) holder.getProperties()
+                                                  .get("Orientation"),
+                              children,
+                              weights);
     }
     else if (holder.getType().equals(ContentHolder.Type.TabPane))
     {
-      ContentTabPane tabPane = new ContentTabPane();
-
-      List<DockNode> dockNodeList = new ArrayList<>();
+      List<DockNode> tabNodes = new ArrayList<>();
       for (Object item : holder.getChildren())
       {
         if (item instanceof String)
         {
-          // Use dock node
-          if (dockNodes.containsKey(item))
-          {
-            tabPane.addDockNodeTab(new DockNodeTab(dockNodes.get(item)));
-            dockNodes.remove(item);
-          }
-          else
+          DockNode node = takeDockNode((String) item,
+                                       dockNodes,
+                                       delayOpenHandler);
+          if (node != null)
           {
-            // If delayOpenHandler is provided, we call it
-            if (null != delayOpenHandler)
-            {
-              DockNode newNode = delayOpenHandler.open((String) item);
-              if (newNode != null)
-              {
-              	dockNodeList.add( newNode );
-              }
-            }
-            else
-              System.err.println(item + " is not present.");
+            tabNodes.add(node);
           }
         }
       }
 
-      for (DockNode n : dockNodeList)
-	  {
-		n.dockedProperty().set(true);
-		tabPane.addDockNodeTab(new DockNodeTab(n));
-	  }
-
-      if (parent != null)
-        tabPane.setContentParent(parent);
-      tabPane.getSelectionModel()
-             .select((int) holder.getProperties()
-                                 .get("SelectedIndex"));
-      pane = tabPane;
+      return DockLayout.tabs(tabNodes,
+                             (int) holder.getProperties()
+                                         .get("SelectedIndex"));
     }
 
-    return pane;
+    return null;
+  }
+
+  private DockNode takeDockNode(String title,
+                                HashMap<String, DockNode> dockNodes,
+                                DelayOpenHandler delayOpenHandler)
+  {
+    // Use dock node
+    DockNode node = dockNodes.remove(title);
+    if (node == null)
+    {
+      // If delayOpenHandler is provided, we call it
+      if (delayOpenHandler != null)
+      {
+        node = delayOpenHandler.open(title);
+      }
+      else
+      {
+        System.err.println(title + " is not present.");
+      }
+    }
+    return node;
   }
 }
@@ -0,0 +1,179 @@
+/**
+ * @file DockPaneRegistry.java
+ * @brief Class keeping track of the live dock panes and their windows.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.WeakHashMap;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+/**
+ * A registry of the dock panes that are alive, used to find the windows that
+ * can accept a dragged dock node without scanning every window of the
+ * application. Dock panes are only weakly referenced so registering one never
+ * keeps it alive.
+ *
+ * JavaFX does not expose the stacking order of windows, so it is approximated
+ * by the order in which the windows last gained focus since focusing a window
+ * brings it to the front.
+ *
+ * @since DockFX 0.1
+ */
+final class DockPaneRegistry
+{
+  /**
+   * The registered dock panes in registration order.
+   */
+  private static final List<WeakReference<DockPane>> dockPanes =
+                                                              new ArrayList<>();
+
+  /**
+   * The windows of the registered dock panes mapped to the value of
+   * {@link #focusClock} when they last gained focus, or zero if they never
+   * did.
+   */
+  private static final WeakHashMap<Window, Long> focusStamps =
+                                                             new WeakHashMap<>();
+
+  /**
+   * Counts the focus gains of the observed windows.
+   */
+  private static long focusClock = 0;
+
+  /**
+   * Stamps a window with the focus clock whenever it gains focus.
+   */
+  private static final ChangeListener<Boolean> focusListener =
+                                                             new ChangeListener<Boolean>()
+                                                             {
+                                                               @Override
+                                                               public void changed(ObservableValue<? extends Boolean> observable,
+                                                                                   Boolean oldValue,
+                                                                                   Boolean newValue)
+                                                               {
+                                                                 if (newValue)
+                                                                 {
+                                                                   Object window =
+                                                                                 ((ReadOnlyProperty<?>) observable).getBean();
+                                                                   focusStamps.put((Window) window,
+                                                                                   ++focusClock);
+                                                                 }
+                                                               }
+                                                             };
+
+  /**
+   * Orders windows from the most to the least recently focused one.
+   */
+  private static final Comparator<Window> frontToBack =
+                                                      new Comparator<Window>()
+                                                      {
+                                                        @Override
+                                                        public int compare(Window a,
+                                                                           Window b)
+                                                        {
+                                                          return Long.compare(focusStamps.get(b),
+                                                                              focusStamps.get(a));
+                                                        }
+                                                      };
+
+  private DockPaneRegistry()
+  {
+  }
+
+  /**
+   * Register a dock pane for the lifetime of the dock pane.
+   *
+   * @param dockPane
+   *          The dock pane that is to be registered.
+   */
+  static void register(DockPane dockPane)
+  {
+    dockPanes.add(new WeakReference<>(dockPane));
+  }
+
+  /**
+   * Collect the registered dock panes that are part of the scene.
+   *
+   * @param scene
+   *          The scene the dock panes have to be part of.
+   * @param sceneDockPanes
+   *          The list that is to be cleared and filled with the dock panes, so
+   *          that callers can reuse it.
+   */
+  static void collectDockPanes(Scene scene, List<DockPane> sceneDockPanes)
+  {
+    sceneDockPanes.clear();
+    for (int i = dockPanes.size() - 1; i >= 0; i--)
+    {
+      DockPane dockPane = dockPanes.get(i).get();
+      if (dockPane == null)
+      {
+        dockPanes.remove(i);
+      }
+      else if (dockPane.getScene() == scene)
+      {
+        sceneDockPanes.add(dockPane);
+      }
+    }
+  }
+
+  /**
+   * Collect the showing windows containing at least one registered dock pane
+   * ordered from front to back. Dock panes that were garbage collected are
+   * dropped along the way.
+   *
+   * @param windows
+   *          The list that is to be cleared and filled with the windows, so
+   *          that callers can reuse it.
+   */
+  static void collectWindows(List<Window> windows)
+  {
+    windows.clear();
+    for (int i = dockPanes.size() - 1; i >= 0; i--)
+    {
+      DockPane dockPane = dockPanes.get(i).get();
+      if (dockPane == null)
+      {
+        dockPanes.remove(i);
+        continue;
+      }
+
+      Scene scene = dockPane.getScene();
+      Window window = scene != null ? scene.getWindow() : null;
+      if (window == null || !window.isShowing() || windows.contains(window))
+        continue;
+
+      if (!focusStamps.containsKey(window))
+      {
+        focusStamps.put(window, window.isFocused() ? ++focusClock : 0L);
+        window.focusedProperty().addListener(focusListener);
+      }
+      windows.add(window);
+    }
+    windows.sort(frontToBack);
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * @file DockPlacement.java
+ * @brief Class describing where a dock node is docked into a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import javafx.scene.Node;
+
+/**
+ * The description of where a dock node is docked into a dock pane, the same
+ * arguments {@link DockNode#dock(DockPane, DockPos, Node)} takes, so that many
+ * dock nodes can be docked at once with {@link DockPane#dockAll(java.util.List)}.
+ *
+ * @since DockFX 0.1
+ */
+public final class DockPlacement
+{
+  private final DockNode dockNode;
+  private final DockPos dockPos;
+  private final Node sibling;
+
+  /**
+   * Creates a placement of a dock node relative to the whole layout.
+   *
+   * @param dockNode
+   *          The dock node that is to be docked.
+   * @param dockPos
+   *          The docking position relative to the layout.
+   */
+  public DockPlacement(DockNode dockNode, DockPos dockPos)
+  {
+    this(dockNode, dockPos, null);
+  }
+
+  /**
+   * Creates a placement of a dock node relative to a sibling.
+   *
+   * @param dockNode
+   *          The dock node that is to be docked.
+   * @param dockPos
+   *          The docking position relative to the sibling.
+   * @param sibling
+   *          The sibling, which is docked before this node, or null to dock
+   *          relative to the whole layout.
+   */
+  public DockPlacement(DockNode dockNode, DockPos dockPos, Node sibling)
+  {
+    if (dockNode == null)
+      throw new IllegalArgumentException("dockNode must not be null");
+    if (dockPos == null)
+      throw new IllegalArgumentException("dockPos must not be null");
+
+    this.dockNode = dockNode;
+    this.dockPos = dockPos;
+    this.sibling = sibling;
+  }
+
+  /**
+   * The dock node that is to be docked.
+   *
+   * @return The dock node.
+   */
+  public DockNode getDockNode()
+  {
+    return dockNode;
+  }
+
+  /**
+   * The docking position relative to the sibling.
+   *
+   * @return The docking position.
+   */
+  public DockPos getDockPos()
+  {
+    return dockPos;
+  }
+
+  /**
+   * The sibling the dock node is docked relative to.
+   *
+   * @return The sibling or null if the dock node is docked relative to the
+   *         whole layout.
+   */
+  public Node getSibling()
+  {
+    return sibling;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "DockPlacement[" + dockNode.getTitle() + ", " + dockPos + "]";
+  }
+}
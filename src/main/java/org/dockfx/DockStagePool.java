@@ -0,0 +1,267 @@
+/**
+ * @file DockStagePool.java
+ * @brief Class implementing a pool of floating stages of a dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import javafx.animation.PauseTransition;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
+
+/**
+ * A bounded pool of the floating stages of a dock pane. Each stage comes with
+ * its scene and the border pane that hosts a floating dock node, already
+ * styled, so tearing off a dock node does not have to create a native window
+ * and apply CSS every time. Stages are owned by the window of the dock pane and
+ * are only reused for the stage style they were created with.
+ *
+ * Released stages are hidden and kept until the pool has been idle for a while,
+ * then all of them except a pre-warmed one are closed.
+ *
+ * @since DockFX 0.1
+ */
+final class DockStagePool
+{
+  /**
+   * The maximum number of idle stages kept by a pool.
+   */
+  static final int CAPACITY = 4;
+
+  /**
+   * The time a pool has to be idle before its stages are closed.
+   */
+  private static final Duration IDLE_TIMEOUT = Duration.seconds(30);
+
+  /**
+   * The dock pane whose window owns the stages.
+   */
+  private final DockPane dockPane;
+
+  /**
+   * The stages that are currently not in use.
+   */
+  private final List<Stage> idleStages = new ArrayList<>();
+
+  /**
+   * The filters closing the stages created by this pool when their owner is
+   * closed, so they can be removed when a stage is discarded.
+   */
+  private final HashMap<Stage, EventHandler<WindowEvent>> closeFilters =
+                                                                       new HashMap<>();
+
+  /**
+   * Trims the pool once it was idle for {@link #IDLE_TIMEOUT}.
+   */
+  private final PauseTransition idleTimer = new PauseTransition(IDLE_TIMEOUT);
+
+  /**
+   * The window owning the stages of this pool.
+   */
+  private Window owner;
+
+  /**
+   * The style of the stage that is kept when the pool is trimmed or null if no
+   * stage was pre-warmed.
+   */
+  private StageStyle prewarmedStyle;
+
+  DockStagePool(DockPane dockPane)
+  {
+    this.dockPane = dockPane;
+    idleTimer.setOnFinished(new EventHandler<ActionEvent>()
+    {
+      @Override
+      public void handle(ActionEvent event)
+      {
+        trim();
+      }
+    });
+  }
+
+  /**
+   * Take a hidden stage of the given style out of the pool, creating one if
+   * none is available.
+   *
+   * @param stageStyle
+   *          The style of the stage.
+   * @return A hidden stage whose scene root is an empty border pane.
+   */
+  Stage acquire(StageStyle stageStyle)
+  {
+    validateOwner();
+
+    for (int i = idleStages.size() - 1; i >= 0; i--)
+    {
+      Stage stage = idleStages.get(i);
+      if (stage.getStyle() == stageStyle)
+      {
+        idleStages.remove(i);
+        return stage;
+      }
+    }
+    return create(stageStyle);
+  }
+
+  /**
+   * Hide a stage obtained from {@link #acquire(StageStyle)} and return it to
+   * the pool, or close it if the pool is full or the owner changed.
+   *
+   * @param stage
+   *          The stage that is no longer used.
+   */
+  void release(Stage stage)
+  {
+    stage.hide();
+    ((BorderPane) stage.getScene().getRoot()).setCenter(null);
+
+    // the next dock node floated in the stage starts out with a restored stage
+    stage.setIconified(false);
+    stage.setMaximized(false);
+    stage.setFullScreen(false);
+
+    if (stage.getOwner() == owner && idleStages.size() < CAPACITY
+        && closeFilters.containsKey(stage))
+    {
+      idleStages.add(stage);
+      idleTimer.playFromStart();
+    }
+    else
+    {
+      discard(stage);
+    }
+  }
+
+  /**
+   * Create an idle stage of the given style that is kept when the pool is
+   * trimmed, so that the next tear off does not have to create one.
+   *
+   * @param stageStyle
+   *          The style of the stage.
+   */
+  void prewarm(StageStyle stageStyle)
+  {
+    validateOwner();
+
+    prewarmedStyle = stageStyle;
+    for (Stage stage : idleStages)
+    {
+      if (stage.getStyle() == stageStyle)
+        return;
+    }
+    idleStages.add(create(stageStyle));
+  }
+
+  /**
+   * Close the idle stages except for a pre-warmed one.
+   */
+  private void trim()
+  {
+    boolean keptPrewarmed = false;
+    for (int i = idleStages.size() - 1; i >= 0; i--)
+    {
+      Stage stage = idleStages.get(i);
+      if (!keptPrewarmed && stage.getStyle() == prewarmedStyle)
+      {
+        keptPrewarmed = true;
+        continue;
+      }
+      idleStages.remove(i);
+      discard(stage);
+    }
+  }
+
+  /**
+   * Drop the idle stages if the dock pane moved to another window since they
+   * can not change their owner.
+   */
+  private void validateOwner()
+  {
+    Window window = dockPane.getScene() != null ? dockPane.getScene()
+                                                          .getWindow()
+                                                : null;
+    if (window != owner)
+    {
+      for (Stage stage : idleStages)
+      {
+        discard(stage);
+      }
+      idleStages.clear();
+      owner = window;
+    }
+  }
+
+  private Stage create(StageStyle stageStyle)
+  {
+    Stage stage = new Stage();
+    if (owner != null)
+    {
+      stage.initOwner(owner);
+
+      EventHandler<WindowEvent> closeFilter = new EventHandler<WindowEvent>()
+      {
+        @Override
+        public void handle(WindowEvent event)
+        {
+          stage.close();
+        }
+      };
+      owner.addEventFilter(WindowEvent.WINDOW_CLOSE_REQUEST, closeFilter);
+      closeFilters.put(stage, closeFilter);
+    }
+    stage.initStyle(stageStyle);
+
+    // the border pane allows the dock node to
+    // have a drop shadow effect on the border
+    // but also maintain the layout of contents
+    // such as a tab that has no content
+    BorderPane borderPane = new BorderPane();
+    borderPane.getStyleClass().add("dock-node-border");
+
+    Scene scene = new Scene(borderPane);
+    if (stageStyle == StageStyle.TRANSPARENT)
+    {
+      scene.setFill(null);
+    }
+    stage.setScene(scene);
+
+    borderPane.applyCss();
+    return stage;
+  }
+
+  private void discard(Stage stage)
+  {
+    EventHandler<WindowEvent> closeFilter = closeFilters.remove(stage);
+    if (closeFilter != null && stage.getOwner() != null)
+    {
+      stage.getOwner().removeEventFilter(WindowEvent.WINDOW_CLOSE_REQUEST,
+                                         closeFilter);
+    }
+    stage.close();
+  }
+}
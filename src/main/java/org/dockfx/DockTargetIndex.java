@@ -0,0 +1,465 @@
+/**
+ * @file DockTargetIndex.java
+ * @brief Class implementing a spatial index of the dock targets of a scene.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import org.dockfx.pane.ContentPane;
+
+/**
+ * A uniform grid over the scene coordinates of a single scene holding the dock
+ * targets of that scene, which are the dock panes, their content panes and
+ * their dock nodes. Dragging a dock node picks the deepest target under the
+ * mouse with a single cell lookup instead of walking the whole scene graph for
+ * every mouse event.
+ *
+ * The index is rebuilt lazily on the first query after it was invalidated. A
+ * rebuild only traverses the dock hierarchy of the dock panes of the scene,
+ * from dock pane to content panes to dock nodes. It invalidates itself when
+ * the layout bounds or the scene transform of any indexed target change, when
+ * a dock node enters or leaves the scene and dock panes invalidate it when
+ * their layout structure changes.
+ *
+ * @since DockFX 0.1
+ */
+final class DockTargetIndex
+{
+  /**
+   * The key under which the index of a scene is stored in the scene
+   * properties.
+   */
+  private static final Object PROPERTIES_KEY = DockTargetIndex.class;
+
+  /**
+   * The width and height of a grid cell in scene coordinates.
+   */
+  private static final double CELL_SIZE = 128;
+
+  /**
+   * The grid of an index without targets.
+   */
+  private static final Entry[][] NO_CELLS = new Entry[0][];
+
+  /**
+   * A single dock target with its bounds in scene coordinates.
+   */
+  private static final class Entry
+  {
+    private final Node node;
+    private final int depth;
+    private final double minX, minY, maxX, maxY;
+
+    private Entry(Node node, int depth, Bounds bounds)
+    {
+      this.node = node;
+      this.depth = depth;
+      this.minX = bounds.getMinX();
+      this.minY = bounds.getMinY();
+      this.maxX = bounds.getMaxX();
+      this.maxY = bounds.getMaxY();
+    }
+
+    private boolean isEmpty()
+    {
+      return maxX < minX || maxY < minY;
+    }
+
+    private boolean contains(double x, double y)
+    {
+      return x >= minX && x < maxX && y >= minY && y < maxY;
+    }
+  }
+
+  /**
+   * The scene this index belongs to.
+   */
+  private final Scene scene;
+
+  /**
+   * The indexed targets in the order they were visited.
+   */
+  private final List<Entry> entries = new ArrayList<>();
+
+  /**
+   * The targets overlapping each grid cell in row major order, null for cells
+   * without targets. The grid covers the scene so that a lookup is plain array
+   * indexing and does not allocate.
+   */
+  private Entry[][] cells = NO_CELLS;
+
+  /**
+   * The number of grid columns and rows covering the scene.
+   */
+  private int columns, rows;
+
+  /**
+   * The dock panes of the scene while the index is rebuilt.
+   */
+  private final List<DockPane> dockPanes = new ArrayList<>();
+
+  /**
+   * The dock nodes whose scene is observed, including those that are not part
+   * of the scene when the index was built.
+   */
+  private final List<Node> dockNodes = new ArrayList<>();
+
+  /**
+   * Whether the index has to be rebuilt before the next query.
+   */
+  private boolean dirty = true;
+
+  /**
+   * Counts the rebuilds of this index so that state derived from the bounds of
+   * the dock targets can tell when it went stale.
+   */
+  private long generation = 0;
+
+  /**
+   * Invalidates this index when one of the indexed targets changes its bounds.
+   */
+  private final InvalidationListener targetListener =
+                                                    new InvalidationListener()
+                                                    {
+                                                      @Override
+                                                      public void invalidated(Observable observable)
+                                                      {
+                                                        invalidate();
+                                                      }
+                                                    };
+
+  private DockTargetIndex(Scene scene)
+  {
+    this.scene = scene;
+  }
+
+  /**
+   * The dock target index of the scene, created on first use.
+   *
+   * @param scene
+   *          The scene that is to be indexed.
+   * @return The dock target index of the scene.
+   */
+  static DockTargetIndex forScene(Scene scene)
+  {
+    DockTargetIndex index =
+                          (DockTargetIndex) scene.getProperties()
+                                                 .get(PROPERTIES_KEY);
+    if (index == null)
+    {
+      index = new DockTargetIndex(scene);
+      scene.getProperties().put(PROPERTIES_KEY, index);
+    }
+    return index;
+  }
+
+  /**
+   * Invalidate the dock target index of the scene if it has one.
+   *
+   * @param scene
+   *          The scene whose dock targets changed. Can be null.
+   */
+  static void invalidate(Scene scene)
+  {
+    if (scene != null && scene.hasProperties())
+    {
+      DockTargetIndex index =
+                            (DockTargetIndex) scene.getProperties()
+                                                   .get(PROPERTIES_KEY);
+      if (index != null)
+      {
+        index.invalidate();
+      }
+    }
+  }
+
+  /**
+   * Drop the indexed targets and stop observing them. The index is rebuilt on
+   * the next query.
+   */
+  void invalidate()
+  {
+    if (dirty)
+      return;
+
+    dirty = true;
+    for (Entry entry : entries)
+    {
+      entry.node.layoutBoundsProperty().removeListener(targetListener);
+      entry.node.localToSceneTransformProperty()
+                .removeListener(targetListener);
+    }
+    for (Node node : dockNodes)
+    {
+      node.sceneProperty().removeListener(targetListener);
+    }
+    scene.widthProperty().removeListener(targetListener);
+    scene.heightProperty().removeListener(targetListener);
+    entries.clear();
+    dockNodes.clear();
+    cells = NO_CELLS;
+    columns = rows = 0;
+  }
+
+  /**
+   * The number of times this index was built. It changes whenever the layout
+   * bounds or the scene transform of a dock target changed since the last
+   * call.
+   *
+   * @return The number of times this index was built.
+   */
+  long getGeneration()
+  {
+    validate();
+    return generation;
+  }
+
+  /**
+   * Pick the deepest visible dock target at the given screen location.
+   *
+   * @param screenX
+   *          The horizontal screen coordinate of the location.
+   * @param screenY
+   *          The vertical screen coordinate of the location.
+   * @return The deepest dock target at the location or null if there is none.
+   */
+  Node pick(double screenX, double screenY)
+  {
+    Window window = scene.getWindow();
+    if (window == null)
+      return null;
+
+    validate();
+
+    double x = screenX - window.getX() - scene.getX();
+    double y = screenY - window.getY() - scene.getY();
+
+    int cellX = cellOf(x), cellY = cellOf(y);
+    if (cellX < 0 || cellX >= columns || cellY < 0 || cellY >= rows)
+      return null;
+
+    Entry[] cell = cells[cellY * columns + cellX];
+    if (cell == null)
+      return null;
+
+    Entry picked = null;
+    for (int i = 0; i < cell.length; i++)
+    {
+      Entry entry = cell[i];
+      // later entries win ties since they are painted above earlier ones
+      if (entry.contains(x, y)
+          && (picked == null || entry.depth >= picked.depth)
+          && isPickable(entry.node))
+      {
+        picked = entry;
+      }
+    }
+    return picked != null ? picked.node : null;
+  }
+
+  /**
+   * Whether the node and all of its parents are visible and receive mouse
+   * events, which is the case the scene graph traversal used to require.
+   */
+  private static boolean isPickable(Node node)
+  {
+    for (Node n = node; n != null; n = n.getParent())
+    {
+      if (!n.isVisible() || n.isMouseTransparent())
+        return false;
+    }
+    return true;
+  }
+
+  private void validate()
+  {
+    if (!dirty || scene.getRoot() == null)
+      return;
+
+    dirty = false;
+    generation++;
+
+    // only the dock hierarchy is traversed, the content of a dock node is
+    // opaque so the cost depends on the number of dock nodes rather than on
+    // the complexity of the application content
+    DockPaneRegistry.collectDockPanes(scene, dockPanes);
+    ArrayDeque<Node> stack = new ArrayDeque<>();
+    for (DockPane dockPane : dockPanes)
+    {
+      stack.push(dockPane);
+      while (!stack.isEmpty())
+      {
+        Node node = stack.pop();
+        // the content of a tab pane may detach and attach its dock nodes
+        // without changing the layout structure of the dock pane
+        if (node instanceof DockNode)
+        {
+          node.sceneProperty().addListener(targetListener);
+          dockNodes.add(node);
+        }
+
+        // dock nodes of unselected tabs are not part of the scene
+        if (node.getScene() != scene)
+          continue;
+
+        add(node, depthOf(node));
+
+        if (node instanceof DockPane)
+        {
+          for (Node child : ((DockPane) node).getChildrenUnmodifiable())
+          {
+            if (child instanceof ContentPane)
+            {
+              stack.push(child);
+            }
+          }
+        }
+        else if (node instanceof ContentPane)
+        {
+          for (Node child : ((ContentPane) node).getChildrenList())
+          {
+            if (child instanceof ContentPane || child instanceof DockNode)
+            {
+              stack.push(child);
+            }
+          }
+        }
+      }
+    }
+    dockPanes.clear();
+
+    buildCells();
+  }
+
+  /**
+   * The depth of the node in the scene graph, which decides between nested
+   * dock targets.
+   */
+  private static int depthOf(Node node)
+  {
+    int depth = 0;
+    Parent parent = node.getParent();
+    while (parent != null)
+    {
+      depth++;
+      parent = parent.getParent();
+    }
+    return depth;
+  }
+
+  private void add(Node node, int depth)
+  {
+    // reading both properties validates them so that the listeners below are
+    // notified about the next change
+    Bounds bounds = node.getLocalToSceneTransform()
+                        .transform(node.getLayoutBounds());
+
+    node.layoutBoundsProperty().addListener(targetListener);
+    node.localToSceneTransformProperty().addListener(targetListener);
+
+    entries.add(new Entry(node, depth, bounds));
+  }
+
+  /**
+   * Distribute the indexed targets over the grid cells covering the scene.
+   * Targets are counted per cell first so that every cell gets an exactly
+   * sized array.
+   */
+  private void buildCells()
+  {
+    // the grid is clipped to the scene since nothing outside of it can be
+    // picked, so it has to be rebuilt when the scene is resized
+    scene.widthProperty().addListener(targetListener);
+    scene.heightProperty().addListener(targetListener);
+
+    columns = cellOf(scene.getWidth()) + 1;
+    rows = cellOf(scene.getHeight()) + 1;
+
+    int[] counts = new int[columns * rows];
+    for (Entry entry : entries)
+    {
+      if (entry.isEmpty())
+        continue;
+
+      int minCellX = minCell(entry.minX);
+      int maxCellX = maxCell(entry.maxX, columns);
+      int minCellY = minCell(entry.minY);
+      int maxCellY = maxCell(entry.maxY, rows);
+      for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+      {
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+        {
+          counts[cellY * columns + cellX]++;
+        }
+      }
+    }
+
+    cells = new Entry[columns * rows][];
+    for (int i = 0; i < counts.length; i++)
+    {
+      cells[i] = counts[i] > 0 ? new Entry[counts[i]] : null;
+      counts[i] = 0;
+    }
+
+    // filling in visiting order keeps the tie breaking of pick intact
+    for (Entry entry : entries)
+    {
+      if (entry.isEmpty())
+        continue;
+
+      int minCellX = minCell(entry.minX);
+      int maxCellX = maxCell(entry.maxX, columns);
+      int minCellY = minCell(entry.minY);
+      int maxCellY = maxCell(entry.maxY, rows);
+      for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+      {
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+        {
+          int i = cellY * columns + cellX;
+          cells[i][counts[i]++] = entry;
+        }
+      }
+    }
+  }
+
+  private static int minCell(double coordinate)
+  {
+    return Math.max(0, cellOf(coordinate));
+  }
+
+  private static int maxCell(double coordinate, int count)
+  {
+    return Math.min(count - 1, cellOf(coordinate));
+  }
+
+  private static int cellOf(double coordinate)
+  {
+    return (int) Math.floor(coordinate / CELL_SIZE);
+  }
+}
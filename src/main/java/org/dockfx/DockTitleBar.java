@@ -20,19 +20,20 @@
 
 package org.dockfx;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Stack;
+import java.util.List;
+import javafx.animation.AnimationTimer;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.event.EventHandler;
+import javafx.event.EventType;
 import javafx.geometry.Insets;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
-import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.input.MouseButton;
@@ -40,11 +41,11 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Popup;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 
-import com.sun.javafx.stage.StageHelper;
-
 /**
  * Base class for a dock node title bar that provides the mouse dragging
  * functionality, captioning, docking, and state manipulation.
@@ -257,6 +258,119 @@ public class DockTitleBar extends HBox
    */
   private HashMap<Window, Node> dragNodes =
                                           new HashMap<Window, Node>();
+  /**
+   * The event dispatch chain of the current node being dragged over for each
+   * window, reused for the dock events fired on it during the drag.
+   */
+  private HashMap<Window, DockEventDispatchChain> dispatchChains =
+                                                                new HashMap<Window, DockEventDispatchChain>();
+
+  /**
+   * The latest mouse location of the current drag, local to this title bar and
+   * in screen coordinates.
+   */
+  private double dragX, dragY, dragScreenX, dragScreenY;
+  /**
+   * The dock events fired during the current drag. They are created the first
+   * time they are needed and reused for every following mouse event, so
+   * dragging does not produce garbage for each mouse event.
+   */
+  private DockEvent dockEnterEvent, dockOverEvent, dockExitEvent,
+      dockReleasedEvent;
+  /**
+   * The windows that can accept the dragged dock node from front to back,
+   * reused for every pick.
+   */
+  private final List<Window> dockWindows = new ArrayList<Window>();
+  /**
+   * Whether the current drag moves an outline of the dock node, which stays
+   * docked, instead of its floating stage.
+   */
+  private boolean outlineDrag = false;
+  /**
+   * The popup showing the outline of a dock node dragged in outline mode. Only
+   * one dock node can be dragged at a time so all title bars share it.
+   */
+  private static Popup dragOutline;
+  /**
+   * The outline shown by the drag outline popup.
+   */
+  private static Rectangle dragOutlineRectangle;
+  /**
+   * Whether the latest mouse location still has to be processed.
+   */
+  private boolean dragPending = false;
+  /**
+   * The number of mouse drag events received and processed during the current
+   * or last drag.
+   */
+  private long dragEventCount = 0, processedDragEventCount = 0;
+  /**
+   * The latency statistics of the current drag or null if the dock pane of the
+   * dock node has no drag statistics listener.
+   */
+  private DragStatistics dragStatistics;
+  /**
+   * The dock pane whose drag statistics listeners are notified at the end of
+   * the current drag, which may differ from the dock pane the node is dropped
+   * into.
+   */
+  private DockPane dragStatisticsPane;
+  /**
+   * The time the oldest mouse drag event that has not been processed yet was
+   * received.
+   */
+  private long dragEventTime;
+
+  /**
+   * Processes the latest mouse location once per pulse so that mice reporting
+   * several events per frame cost only a single stage move and target pick.
+   */
+  private final AnimationTimer dragPulse = new AnimationTimer()
+  {
+    @Override
+    public void handle(long now)
+    {
+      stop();
+      if (dragPending)
+      {
+        processDrag();
+      }
+    }
+  };
+
+  /**
+   * The number of mouse drag events received during the current or last drag.
+   *
+   * @return The number of mouse drag events received during the current or
+   *         last drag.
+   */
+  public final long getDragEventCount()
+  {
+    return dragEventCount;
+  }
+
+  /**
+   * The number of mouse drag events of the current or last drag that were
+   * superseded by a later event before the next pulse and never processed.
+   *
+   * @return The number of mouse drag events that were coalesced.
+   */
+  public final long getCoalescedDragEventCount()
+  {
+    return dragEventCount - processedDragEventCount;
+  }
+
+  /**
+   * The latency statistics of the current drag.
+   *
+   * @return The latency statistics of the current drag or null if this drag
+   *         is not measured.
+   */
+  DragStatistics getDragStatistics()
+  {
+    return dragStatistics;
+  }
 
   /**
    * The task that is to be executed when the dock event target is picked. This
@@ -302,95 +416,301 @@ public class DockTitleBar extends HBox
   }
 
   /**
-   * Traverse the scene graph for all open stages and pick an event target for a
-   * dock event based on the location. Once the event target is chosen run the
-   * event task with the target and the previous target of the last dock event
-   * if one is cached. If an event target is not found fire the explicit dock
-   * event on the stage root if one is provided.
+   * Fires the dock over event on the target and the dock enter and exit events
+   * when the target differs from the last one in its stage.
+   */
+  private final EventTask dragTask = new EventTask()
+  {
+    @Override
+    public void run(Node node, Node dragNode)
+    {
+      executions++;
+
+      DockEventDispatchChain dispatchChain = getDispatchChain(node);
+
+      if (dragNode != node)
+      {
+        dockEnterEvent = updateDockEvent(dockEnterEvent,
+                                         DockEvent.DOCK_ENTER,
+                                         node);
+        dispatchChain.fire(dockEnterEvent);
+
+        if (dragNode != null)
+        {
+          // fire the dock exit first so listeners
+          // can actually keep track of the node we
+          // are currently over and know when we
+          // aren't over any which DOCK_OVER
+          // does not provide
+          fireDockExit(dragNode);
+        }
+
+        dragNodes.put(node.getScene().getWindow(), node);
+      }
+      dockOverEvent = updateDockEvent(dockOverEvent,
+                                      DockEvent.DOCK_OVER,
+                                      node);
+      dispatchChain.fire(dockOverEvent);
+    }
+  };
+
+  /**
+   * Fires the dock released event on the target.
+   */
+  private final EventTask releaseTask = new EventTask()
+  {
+    @Override
+    public void run(Node node, Node dragNode)
+    {
+      executions++;
+      dockReleasedEvent = updateDockEvent(dockReleasedEvent,
+                                          DockEvent.DOCK_RELEASED,
+                                          node);
+      if (dragNode != node)
+      {
+        Event.fireEvent(node, dockReleasedEvent);
+      }
+      Event.fireEvent(node, dockReleasedEvent);
+    }
+  };
+
+  /**
+   * Prepare a dock event of the current drag for being fired on the target at
+   * the latest mouse location, creating it if it was not needed before.
+   *
+   * @param event
+   *          The event of the current drag of the given type or null if it was
+   *          not created yet.
+   * @param eventType
+   *          The type of the event.
+   * @param target
+   *          The node the event is fired on.
+   * @return The event that is to be fired.
+   */
+  private DockEvent updateDockEvent(DockEvent event,
+                                    EventType<DockEvent> eventType,
+                                    Node target)
+  {
+    if (event == null)
+    {
+      return new DockEvent(this,
+                           target,
+                           eventType,
+                           dragX,
+                           dragY,
+                           dragScreenX,
+                           dragScreenY,
+                           null,
+                           this.getDockNode());
+    }
+    return event.update(this,
+                        target,
+                        dragX,
+                        dragY,
+                        dragScreenX,
+                        dragScreenY);
+  }
+
+  /**
+   * The event dispatch chain for the target of the dock events in its window,
+   * built again only when the target changed or moved in the scene graph.
+   *
+   * @param target
+   *          The node the dock events are fired on.
+   * @return The event dispatch chain for the target.
+   */
+  private DockEventDispatchChain getDispatchChain(Node target)
+  {
+    Scene scene = target.getScene();
+    long generation = DockTargetIndex.forScene(scene).getGeneration();
+
+    DockEventDispatchChain dispatchChain =
+                                         dispatchChains.get(scene.getWindow());
+    if (dispatchChain == null)
+    {
+      dispatchChain = new DockEventDispatchChain();
+      dispatchChains.put(scene.getWindow(), dispatchChain);
+    }
+    if (!dispatchChain.isBuiltFor(target, generation))
+    {
+      dispatchChain.build(target, generation);
+    }
+    return dispatchChain;
+  }
+
+  private void fireDockExit(Node node)
+  {
+    dockExitEvent = updateDockEvent(dockExitEvent, DockEvent.DOCK_EXIT, node);
+    Event.fireEvent(node, dockExitEvent);
+  }
+
+  /**
+   * Pick an event target for a dock event based on the latest mouse location
+   * for all windows containing a dock pane. The event target is resolved
+   * through the {@link DockTargetIndex} of the front most window at the
+   * location, windows behind it are covered and have no event target. Once the
+   * event target is chosen run the event task with the target and the previous
+   * target of the last dock event if one is cached. If an event target is not
+   * found fire a dock exit event on the previous target if requested.
    * 
-   * @param location
-   *          The location of the dock event in screen coordinates.
    * @param eventTask
    *          The event task to be run when the event target is found.
-   * @param explicit
-   *          The explicit event to be fired on the stage root when no event
-   *          target is found.
+   * @param exitExplicitly
+   *          Whether a dock exit event is to be fired on the previous target
+   *          when no event target is found.
+   * @return Whether an event target was found.
    */
-  private void pickEventTarget(Point2D location,
-                               EventTask eventTask,
-                               Event explicit)
+  private boolean pickEventTarget(EventTask eventTask, boolean exitExplicitly)
   {
-    // RFE for public scene graph traversal API filed but closed:
-    // https://bugs.openjdk.java.net/browse/JDK-8133331
+    // only windows that contain a dock pane can accept the dragged node
+    DockPaneRegistry.collectWindows(dockWindows);
 
-    ObservableList<Stage> stages =
-                                 FXCollections.unmodifiableObservableList(StageHelper.getStages());
-    // fire the dock over event for the active stages
-    for (Stage targetStage : stages)
+    boolean covered = false, found = false;
+    for (int i = 0; i < dockWindows.size(); i++)
     {
+      Window targetWindow = dockWindows.get(i);
+
       // obviously this title bar does not need to receive its own events
       // though users of this library may want to know when their
       // dock node is being dragged by subclassing it or attaching
       // an event listener in which case a new event can be defined or
       // this continue behavior can be removed
-      if (targetStage == this.dockNode.getStage())
+      if (targetWindow == this.dockNode.getStage())
         continue;
 
       eventTask.reset();
 
-      Node dragNode = dragNodes.get(targetStage);
+      Node dragNode = dragNodes.get(targetWindow);
 
-      Parent root = targetStage.getScene().getRoot();
-      Stack<Parent> stack = new Stack<Parent>();
-      if (root.contains(root.screenToLocal(location.getX(),
-                                           location.getY()))
-          && !root.isMouseTransparent())
-      {
-        stack.push(root);
-      }
-      // depth first traversal to find the deepest node or parent with no
-      // children
-      // that intersects the point of interest
-      while (!stack.isEmpty())
+      if (!covered && contains(targetWindow, dragScreenX, dragScreenY))
       {
-        Parent parent = stack.pop();
-        // if this parent contains the mouse click in screen coordinates in its
-        // local bounds
-        // then traverse its children
-        boolean notFired = true;
-        for (Node node : parent.getChildrenUnmodifiable())
+        covered = true;
+
+        // only dock panes, content panes and dock nodes are of interest so
+        // there is no need to walk the application content inside of them
+        long start = dragStatistics != null ? System.nanoTime() : 0;
+        Node node = DockTargetIndex.forScene(targetWindow.getScene())
+                                   .pick(dragScreenX, dragScreenY);
+        if (dragStatistics != null)
         {
-          if (node.contains(node.screenToLocal(location.getX(),
-                                               location.getY()))
-              && !node.isMouseTransparent())
-          {
-            if (node instanceof Parent)
-            {
-              stack.push((Parent) node);
-            }
-            else
-            {
-              eventTask.run(node, dragNode);
-            }
-            notFired = false;
-            break;
-          }
+          dragStatistics.getPickLatency().record(System.nanoTime() - start);
         }
-        // if none of the children fired the event or there were no children
-        // fire it with the parent as the target to receive the event
-        if (notFired)
+        if (node != null)
         {
-          eventTask.run(parent, dragNode);
+          eventTask.run(node, dragNode);
+          found = true;
         }
       }
 
-      if (explicit != null && dragNode != null
+      if (exitExplicitly && dragNode != null
           && eventTask.getExecutions() < 1)
       {
-        Event.fireEvent(dragNode, explicit.copyFor(this, dragNode));
-        dragNodes.put(targetStage, null);
+        fireDockExit(dragNode);
+        dragNodes.put(targetWindow, null);
       }
     }
+    return found;
+  }
+
+  private static boolean contains(Window window, double screenX, double screenY)
+  {
+    return screenX >= window.getX()
+           && screenX < window.getX() + window.getWidth()
+           && screenY >= window.getY()
+           && screenY < window.getY() + window.getHeight();
+  }
+
+  /**
+   * Move the stage or the outline of the dragged dock node to the latest mouse
+   * location and fire the dock events for the dock target at that location.
+   */
+  private void processDrag()
+  {
+    dragPending = false;
+    processedDragEventCount++;
+
+    if (outlineDrag)
+    {
+      dragOutline.setX(dragScreenX - dragStart.getX());
+      dragOutline.setY(dragScreenY - dragStart.getY());
+    }
+    else
+    {
+      moveStage();
+    }
+
+    if (dragStatistics != null)
+    {
+      dragStatistics.getMoveLatency().record(System.nanoTime() - dragEventTime);
+    }
+
+    this.pickEventTarget(dragTask, true);
+  }
+
+  /**
+   * Move the stage of the floating dock node to the latest mouse location.
+   */
+  private void moveStage()
+  {
+    Stage stage = dockNode.getStage();
+    Insets insetsDelta = this.getDockNode()
+                             .getBorderPane()
+                             .getInsets();
+
+    // dragging this way makes the interface more responsive in the event
+    // the system is lagging as is the case with most current JavaFX
+    // implementations on Linux
+    stage.setX(dragScreenX - dragStart.getX() - insetsDelta.getLeft());
+    stage.setY(dragScreenY - dragStart.getY() - insetsDelta.getTop());
+  }
+
+  /**
+   * Detach the dock node from its dock pane into a floating stage covering
+   * the area it was docked to.
+   */
+  private void floatDockNode()
+  {
+    // if we are not using a custom title bar and the user
+    // is not forcing the default one for floating and
+    // the dock node does have native window decorations
+    // then we need to offset the stage position by
+    // the height of this title bar
+    if (!dockNode.isCustomTitleBar() && dockNode.isDecorated())
+    {
+      dockNode.setFloating(true,
+                           new Point2D(0,
+                                       DockTitleBar.this.getHeight()),
+                           null);
+    }
+    else
+    {
+      dockNode.setFloating(true);
+    }
+  }
+
+  /**
+   * Show the outline of the dock node at the latest mouse location.
+   */
+  private void showDragOutline()
+  {
+    if (dragOutline == null)
+    {
+      dragOutlineRectangle = new Rectangle();
+      dragOutlineRectangle.setMouseTransparent(true);
+      dragOutlineRectangle.getStyleClass().add("dock-drag-outline");
+
+      dragOutline = new Popup();
+      dragOutline.setAutoFix(false);
+      dragOutline.getContent().add(dragOutlineRectangle);
+    }
+
+    dragOutlineRectangle.setWidth(dockNode.getWidth());
+    dragOutlineRectangle.setHeight(dockNode.getHeight());
+    // the contents of a tabbed dock node may be detached from the scene, its
+    // title bar is not
+    dragOutline.show(getScene().getWindow(),
+                     dragScreenX - dragStart.getX(),
+                     dragScreenY - dragStart.getY());
   }
 
   @Override
@@ -413,24 +733,37 @@ public class DockTitleBar extends HBox
     }
     else if (event.getEventType() == MouseEvent.DRAG_DETECTED)
     {
-      if (!dockNode.isFloating())
+      // measure the drag for the dock pane the node is dragged out of
+      dragStatisticsPane = dockNode.getDockPane();
+      if (dragStatisticsPane != null
+          && dragStatisticsPane.isRecordingDragStatistics())
       {
-        // if we are not using a custom title bar and the user
-        // is not forcing the default one for floating and
-        // the dock node does have native window decorations
-        // then we need to offset the stage position by
-        // the height of this title bar
-        if (!dockNode.isCustomTitleBar() && dockNode.isDecorated())
-        {
-          dockNode.setFloating(true,
-                               new Point2D(0,
-                                           DockTitleBar.this.getHeight()),
-                               null);
-        }
-        else
+        dragStatistics = new DragStatistics(dockNode);
+      }
+      else
+      {
+        dragStatistics = null;
+      }
+
+      DockPane outlinePane = dockNode.getDockPane();
+      if (!dockNode.isFloating() && dockNode.isDocked()
+          && outlinePane != null && outlinePane.isOutlineDragging())
+      {
+        // the dock node stays docked and is only given a stage if it is
+        // dropped outside of any dock pane
+        if (null == dragStart)
         {
-          dockNode.setFloating(true);
+          dragStart = new Point2D(event.getX(), event.getY());
         }
+        dragScreenX = event.getScreenX();
+        dragScreenY = event.getScreenY();
+
+        outlineDrag = true;
+        showDragOutline();
+      }
+      else if (!dockNode.isFloating())
+      {
+        floatDockNode();
 
         // TODO: Find a better solution.
         // Temporary work around for nodes losing the drag event when removed
@@ -475,6 +808,8 @@ public class DockTitleBar extends HBox
                                 ratioY * dockNode.getHeight());
       }
       dragging = true;
+      dragEventCount = 0;
+      processedDragEventCount = 0;
       event.consume();
     }
     else if (event.getEventType() == MouseEvent.MOUSE_DRAGGED)
@@ -490,11 +825,6 @@ public class DockTitleBar extends HBox
       if (!dragging)
         return;
 
-      Stage stage = dockNode.getStage();
-      Insets insetsDelta = this.getDockNode()
-                               .getBorderPane()
-                               .getInsets();
-
       // it is possible that drag start has not been set if some other node had
       // focus when
       // we started the drag
@@ -503,121 +833,65 @@ public class DockTitleBar extends HBox
         dragStart = new Point2D(event.getX(), event.getY());
       }
 
-      // dragging this way makes the interface more responsive in the event
-      // the system is lagging as is the case with most current JavaFX
-      // implementations on Linux
-      stage.setX(event.getScreenX() - dragStart.getX()
-                 - insetsDelta.getLeft());
-      stage.setY(event.getScreenY() - dragStart.getY()
-                 - insetsDelta.getTop());
-
-      // TODO: change the pick result by adding a copyForPick()
-      DockEvent dockEnterEvent = new DockEvent(this,
-                                               DockEvent.NULL_SOURCE_TARGET,
-                                               DockEvent.DOCK_ENTER,
-                                               event.getX(),
-                                               event.getY(),
-                                               event.getScreenX(),
-                                               event.getScreenY(),
-                                               null,
-                                               this.getDockNode());
-      DockEvent dockOverEvent =
-                              new DockEvent(this,
-                                            DockEvent.NULL_SOURCE_TARGET,
-                                            DockEvent.DOCK_OVER,
-                                            event.getX(),
-                                            event.getY(),
-                                            event.getScreenX(),
-                                            event.getScreenY(),
-                                            null,
-                                            this.getDockNode());
-      DockEvent dockExitEvent =
-                              new DockEvent(this,
-                                            DockEvent.NULL_SOURCE_TARGET,
-                                            DockEvent.DOCK_EXIT,
-                                            event.getX(),
-                                            event.getY(),
-                                            event.getScreenX(),
-                                            event.getScreenY(),
-                                            null,
-                                            this.getDockNode());
-
-      EventTask eventTask = new EventTask()
+      dragX = event.getX();
+      dragY = event.getY();
+      dragScreenX = event.getScreenX();
+      dragScreenY = event.getScreenY();
+      dragEventCount++;
+      if (!dragPending)
       {
-        @Override
-        public void run(Node node, Node dragNode)
-        {
-          executions++;
-
-          if (dragNode != node)
-          {
-            Event.fireEvent(node,
-                            dockEnterEvent.copyFor(DockTitleBar.this,
-                                                   node));
+        dragEventTime = System.nanoTime();
+      }
 
-            if (dragNode != null)
-            {
-              // fire the dock exit first so listeners
-              // can actually keep track of the node we
-              // are currently over and know when we
-              // aren't over any which DOCK_OVER
-              // does not provide
-              Event.fireEvent(dragNode,
-                              dockExitEvent.copyFor(DockTitleBar.this,
-                                                    dragNode));
-            }
-
-            dragNodes.put(node.getScene().getWindow(), node);
-          }
-          Event.fireEvent(node,
-                          dockOverEvent.copyFor(DockTitleBar.this,
-                                                node));
+      DockPane dockPane = dockNode.getDockPane();
+      if (dockPane == null || dockPane.isCoalescingDragEvents())
+      {
+        // only the latest location matters so moving the stage and picking
+        // the dock target are deferred to the next pulse
+        if (!dragPending)
+        {
+          dragPending = true;
+          dragPulse.start();
         }
-      };
-
-      this.pickEventTarget(new Point2D(event.getScreenX(),
-                                       event.getScreenY()),
-                           eventTask,
-                           dockExitEvent);
+      }
+      else
+      {
+        processDrag();
+      }
     }
     else if (event.getEventType() == MouseEvent.MOUSE_RELEASED)
     {
+      // the stage has to reach the release location before dropping it
+      dragPulse.stop();
+      if (dragPending)
+      {
+        processDrag();
+      }
+
       dragging = false;
 
-      DockEvent dockReleasedEvent = new DockEvent(this,
-                                                  DockEvent.NULL_SOURCE_TARGET,
-                                                  DockEvent.DOCK_RELEASED,
-                                                  event.getX(),
-                                                  event.getY(),
-                                                  event.getScreenX(),
-                                                  event.getScreenY(),
-                                                  null,
-                                                  this.getDockNode());
-
-      EventTask eventTask = new EventTask()
-      {
-        @Override
-        public void run(Node node, Node dragNode)
-        {
-          executions++;
-          if (dragNode != node)
-          {
-            Event.fireEvent(node,
-                            dockReleasedEvent.copyFor(DockTitleBar.this,
-                                                      node));
-          }
-          Event.fireEvent(node,
-                          dockReleasedEvent.copyFor(DockTitleBar.this,
-                                                    node));
-        }
-      };
+      dragX = event.getX();
+      dragY = event.getY();
+      dragScreenX = event.getScreenX();
+      dragScreenY = event.getScreenY();
 
-      this.pickEventTarget(new Point2D(event.getScreenX(),
-                                       event.getScreenY()),
-                           eventTask,
-                           null);
+      boolean targetFound = this.pickEventTarget(releaseTask, false);
 
       dragNodes.clear();
+      dispatchChains.clear();
+
+      if (outlineDrag)
+      {
+        outlineDrag = false;
+        dragOutline.hide();
+
+        // dropped outside of any dock pane so the node needs its stage now
+        if (!targetFound && dockNode.isDocked())
+        {
+          floatDockNode();
+          moveStage();
+        }
+      }
 
       // Remove temporary event handler for bug mentioned above.
       DockPane dockPane = this.getDockNode().getPrevDockPane();
@@ -626,6 +900,16 @@ public class DockTitleBar extends HBox
         dockPane.removeEventFilter(MouseEvent.MOUSE_DRAGGED, this);
         dockPane.removeEventFilter(MouseEvent.MOUSE_RELEASED, this);
       }
+
+      if (dragStatistics != null)
+      {
+        DragStatistics finishedDrag = dragStatistics;
+        dragStatistics = null;
+        finishedDrag.setDragEventCounts(getDragEventCount(),
+                                        getCoalescedDragEventCount());
+        dragStatisticsPane.fireDragStatistics(finishedDrag);
+      }
+      dragStatisticsPane = null;
     }
   }
 }
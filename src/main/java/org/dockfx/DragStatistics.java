@@ -0,0 +1,122 @@
+/**
+ * @file DragStatistics.java
+ * @brief Class holding the latency statistics of a single dock node drag.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+/**
+ * The latency statistics of a single drag of a dock node, from the moment the
+ * drag is detected until the dock node is dropped. They are only collected
+ * while the dock pane of the dragged node has a drag statistics listener and
+ * are passed to its listeners once the drag is finished.
+ *
+ * @see DockPane#addDragStatisticsListener(java.util.function.Consumer)
+ * @since DockFX 0.1
+ */
+public final class DragStatistics
+{
+  private final DockNode dockNode;
+  private final LatencyHistogram moveLatency = new LatencyHistogram();
+  private final LatencyHistogram pickLatency = new LatencyHistogram();
+  private final LatencyHistogram indicatorLatency = new LatencyHistogram();
+  private long dragEventCount, coalescedDragEventCount;
+
+  DragStatistics(DockNode dockNode)
+  {
+    this.dockNode = dockNode;
+  }
+
+  /**
+   * The dock node that was dragged.
+   *
+   * @return The dock node that was dragged.
+   */
+  public DockNode getDockNode()
+  {
+    return dockNode;
+  }
+
+  /**
+   * The time from receiving a mouse drag event until the stage or outline of
+   * the dragged dock node was moved to its location. With coalescing drag
+   * events this includes the wait for the next pulse.
+   *
+   * @return The latencies of moving the dragged dock node.
+   */
+  public LatencyHistogram getMoveLatency()
+  {
+    return moveLatency;
+  }
+
+  /**
+   * The time spent finding the dock target under the mouse in each window.
+   *
+   * @return The latencies of picking the dock target.
+   */
+  public LatencyHistogram getPickLatency()
+  {
+    return pickLatency;
+  }
+
+  /**
+   * The time spent by the dock panes updating their dock indicators for each
+   * dock enter and dock over event.
+   *
+   * @return The latencies of updating the dock indicators.
+   */
+  public LatencyHistogram getIndicatorLatency()
+  {
+    return indicatorLatency;
+  }
+
+  /**
+   * The number of mouse drag events received during the drag.
+   *
+   * @return The number of mouse drag events received during the drag.
+   */
+  public long getDragEventCount()
+  {
+    return dragEventCount;
+  }
+
+  /**
+   * The number of mouse drag events that were superseded by a later event
+   * before the next pulse and never processed.
+   *
+   * @return The number of mouse drag events that were coalesced.
+   */
+  public long getCoalescedDragEventCount()
+  {
+    return coalescedDragEventCount;
+  }
+
+  void setDragEventCounts(long dragEventCount, long coalescedDragEventCount)
+  {
+    this.dragEventCount = dragEventCount;
+    this.coalescedDragEventCount = coalescedDragEventCount;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "DragStatistics[events=" + dragEventCount + ", coalesced="
+           + coalescedDragEventCount + ", move=" + moveLatency + ", pick="
+           + pickLatency + ", indicator=" + indicatorLatency + "]";
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * @file LatencyHistogram.java
+ * @brief Class implementing a lock-free histogram of latencies.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds that can be recorded and read from
+ * any thread without locking. Values are counted in buckets that split every
+ * power of two into eight, so percentiles are accurate to within an eighth of
+ * their magnitude.
+ *
+ * @since DockFX 0.1
+ */
+public final class LatencyHistogram
+{
+  /**
+   * The number of buckets each power of two is split into, as a power of two.
+   */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /**
+   * The number of buckets each power of two is split into.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Enough buckets for any positive long value.
+   */
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+  /**
+   * Record a latency.
+   *
+   * @param nanos
+   *          The latency in nanoseconds, negative values are counted as zero.
+   */
+  public void record(long nanos)
+  {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * The number of recorded latencies.
+   *
+   * @return The number of recorded latencies.
+   */
+  public long getCount()
+  {
+    return count.sum();
+  }
+
+  /**
+   * The mean of the recorded latencies in nanoseconds.
+   *
+   * @return The mean of the recorded latencies or zero if none was recorded.
+   */
+  public double getMean()
+  {
+    long n = count.sum();
+    return n > 0 ? (double) total.sum() / n : 0;
+  }
+
+  /**
+   * The highest recorded latency in nanoseconds.
+   *
+   * @return The highest recorded latency or zero if none was recorded.
+   */
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  /**
+   * The latency in nanoseconds that the given percentage of the recorded
+   * latencies do not exceed, for instance 50 for the median or 99 for the
+   * 99th percentile.
+   *
+   * @param percentile
+   *          The percentage between 0 and 100.
+   * @return The upper bound of the bucket holding the percentile, never more
+   *         than the highest recorded latency, or zero if none was recorded.
+   */
+  public long getPercentile(double percentile)
+  {
+    if (percentile < 0 || percentile > 100)
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+
+    long n = count.sum();
+    if (n == 0)
+      return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      seen += counts.get(i);
+      if (seen >= rank)
+      {
+        return Math.min(upperBoundOf(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                         getCount(),
+                         getMean(),
+                         getPercentile(50),
+                         getPercentile(99),
+                         getMax());
+  }
+
+  private static int bucketOf(long value)
+  {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+                    & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBoundOf(int bucket)
+  {
+    if (bucket < SUB_BUCKETS)
+      return bucket;
+
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return (SUB_BUCKETS + subBucket + 1) * width - 1;
+  }
+}
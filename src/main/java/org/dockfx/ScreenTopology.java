@@ -0,0 +1,238 @@
+/**
+ * @file ScreenTopology.java
+ * @brief Class caching the bounds of the screens.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.stage.Screen;
+
+/**
+ * A cache of the bounds of the screens, used to place windows and indicators
+ * on the right monitor. Querying the screens of JavaFX copies and looks up the
+ * screen list on every call, while the cached bounds are plain arrays that are
+ * only refreshed when the list of screens changes, for instance when a monitor
+ * is plugged in or its resolution changes.
+ *
+ * Screens are looked up by the largest overlap with a rectangle. Unlike
+ * {@link Screen#getScreensForRectangle(Rectangle2D)} a screen is always found,
+ * the nearest one if the rectangle is outside of all screens.
+ *
+ * @since DockFX 0.1
+ */
+final class ScreenTopology
+{
+  private static Screen primary;
+  private static Screen[] screens;
+  private static Rectangle2D[] bounds;
+  private static Rectangle2D[] visualBounds;
+
+  private ScreenTopology()
+  {
+  }
+
+  /**
+   * The screen showing most of the rectangle or, if it is outside of all
+   * screens, the screen nearest to it.
+   *
+   * @param x
+   *          The horizontal screen coordinate of the rectangle.
+   * @param y
+   *          The vertical screen coordinate of the rectangle.
+   * @param width
+   *          The width of the rectangle.
+   * @param height
+   *          The height of the rectangle.
+   * @return The screen of the rectangle.
+   */
+  static Screen getScreen(double x, double y, double width, double height)
+  {
+    validate();
+    return screens[indexOf(x, y, width, height)];
+  }
+
+  /**
+   * The visual bounds, which exclude task bars and docks, of the screen
+   * returned by {@link #getScreen(double, double, double, double)}.
+   *
+   * @param x
+   *          The horizontal screen coordinate of the rectangle.
+   * @param y
+   *          The vertical screen coordinate of the rectangle.
+   * @param width
+   *          The width of the rectangle.
+   * @param height
+   *          The height of the rectangle.
+   * @return The visual bounds of the screen of the rectangle.
+   */
+  static Rectangle2D getVisualBounds(double x,
+                                     double y,
+                                     double width,
+                                     double height)
+  {
+    validate();
+    return visualBounds[indexOf(x, y, width, height)];
+  }
+
+  /**
+   * The visual bounds of the primary screen.
+   *
+   * @return The visual bounds of the primary screen.
+   */
+  static Rectangle2D getPrimaryVisualBounds()
+  {
+    validate();
+    for (int i = 0; i < screens.length; i++)
+    {
+      if (screens[i] == primary)
+        return visualBounds[i];
+    }
+    return primary.getVisualBounds();
+  }
+
+  /**
+   * Whether the screen location is on any screen.
+   *
+   * @param x
+   *          The horizontal screen coordinate.
+   * @param y
+   *          The vertical screen coordinate.
+   * @return Whether a screen contains the location.
+   */
+  static boolean isOnScreen(double x, double y)
+  {
+    validate();
+    for (Rectangle2D screenBounds : bounds)
+    {
+      if (screenBounds.contains(x, y))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Move a rectangle into the visual bounds of its screen, the screen showing
+   * most of it or the nearest screen if it is outside of all screens, so that
+   * a window stored on a screen that is no longer available or has become
+   * smaller shows up at the nearest place that can be seen.
+   *
+   * @param x
+   *          The horizontal screen coordinate of the rectangle.
+   * @param y
+   *          The vertical screen coordinate of the rectangle.
+   * @param width
+   *          The width of the rectangle.
+   * @param height
+   *          The height of the rectangle.
+   * @return The location of the rectangle within the visual bounds of its
+   *         screen, aligned to the top left if it is larger than the screen.
+   */
+  static Point2D clampToScreen(double x,
+                               double y,
+                               double width,
+                               double height)
+  {
+    Rectangle2D screenBounds = getVisualBounds(x, y, width, height);
+    double clampedX = Math.max(screenBounds.getMinX(),
+                               Math.min(x, screenBounds.getMaxX() - width));
+    double clampedY = Math.max(screenBounds.getMinY(),
+                               Math.min(y, screenBounds.getMaxY() - height));
+    return new Point2D(clampedX, clampedY);
+  }
+
+  private static int indexOf(double x, double y, double width, double height)
+  {
+    int best = 0;
+    double bestOverlap = -1;
+    for (int i = 0; i < bounds.length; i++)
+    {
+      Rectangle2D screenBounds = bounds[i];
+      double overlapWidth = Math.min(x + width, screenBounds.getMaxX())
+                            - Math.max(x, screenBounds.getMinX());
+      double overlapHeight = Math.min(y + height, screenBounds.getMaxY())
+                             - Math.max(y, screenBounds.getMinY());
+      if (overlapWidth > 0 && overlapHeight > 0
+          && overlapWidth * overlapHeight > bestOverlap)
+      {
+        best = i;
+        bestOverlap = overlapWidth * overlapHeight;
+      }
+    }
+    if (bestOverlap >= 0)
+      return best;
+
+    // the rectangle is outside of all screens, for instance because it is
+    // empty or a monitor was removed, so take the screen nearest to its center
+    double centerX = x + width / 2;
+    double centerY = y + height / 2;
+    double bestDistance = Double.MAX_VALUE;
+    for (int i = 0; i < bounds.length; i++)
+    {
+      Rectangle2D screenBounds = bounds[i];
+      double dx = Math.max(0, Math.max(screenBounds.getMinX() - centerX,
+                                       centerX - screenBounds.getMaxX()));
+      double dy = Math.max(0, Math.max(screenBounds.getMinY() - centerY,
+                                       centerY - screenBounds.getMaxY()));
+      double distance = dx * dx + dy * dy;
+      if (distance < bestDistance)
+      {
+        best = i;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  private static void validate()
+  {
+    if (screens != null)
+      return;
+
+    if (primary == null)
+    {
+      // the screens are only listened to once they are used so the listener
+      // is added on the application thread
+      Screen.getScreens().addListener(new ListChangeListener<Screen>()
+      {
+        @Override
+        public void onChanged(Change<? extends Screen> change)
+        {
+          screens = null;
+        }
+      });
+    }
+
+    primary = Screen.getPrimary();
+    screens = Screen.getScreens().toArray(new Screen[0]);
+    if (screens.length == 0)
+    {
+      screens = new Screen[] { primary };
+    }
+
+    bounds = new Rectangle2D[screens.length];
+    visualBounds = new Rectangle2D[screens.length];
+    for (int i = 0; i < screens.length; i++)
+    {
+      bounds[i] = screens[i].getBounds();
+      visualBounds[i] = screens[i].getVisualBounds();
+    }
+  }
+}
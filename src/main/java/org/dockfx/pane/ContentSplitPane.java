@@ -1,8 +1,14 @@
 package org.dockfx.pane;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Stack;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
@@ -26,6 +32,135 @@ public class ContentSplitPane extends SplitPane implements ContentPane
    */
   ContentPane parent;
 
+  /**
+   * The cached min and max sizes.
+   */
+  private final SizeConstraints sizeConstraints = new SizeConstraints();
+
+  /**
+   * The key of the weight of a child in its properties.
+   */
+  private static final String WEIGHT_CONSTRAINT = "content-split-pane-weight";
+
+  /**
+   * The key of the orientation of the split pane that computed the weight of a
+   * child in its properties. A weight computed by a split pane of the other
+   * orientation measures the wrong dimension and is computed again.
+   */
+  private static final String WEIGHT_ORIENTATION =
+                                                 "content-split-pane-weight-orientation";
+
+  /**
+   * Whether the divider positions reflect the weights of the items, which they
+   * stop doing when items are added or removed or a weight changes.
+   */
+  private boolean dividerPositionsValid = true;
+
+  /**
+   * Whether the weights or divider positions are being updated by this pane,
+   * so that it does not react to its own changes.
+   */
+  private boolean updatingWeights = false;
+
+  /**
+   * Follows the weights of the items.
+   */
+  private final MapChangeListener<Object, Object> weightListener =
+                                                                 new MapChangeListener<Object, Object>()
+                                                                 {
+                                                                   @Override
+                                                                   public void onChanged(Change<? extends Object, ? extends Object> change)
+                                                                   {
+                                                                     if (!updatingWeights
+                                                                         && WEIGHT_CONSTRAINT.equals(change.getKey()))
+                                                                     {
+                                                                       invalidateDividerPositions();
+                                                                     }
+                                                                   }
+                                                                 };
+
+  /**
+   * Computes the divider positions again once a lazy dock node has created its
+   * contents, since the weight measured from its placeholder is not kept.
+   */
+  private final InvalidationListener materializedListener =
+                                                          new InvalidationListener()
+                                                          {
+                                                            @Override
+                                                            public void invalidated(Observable observable)
+                                                            {
+                                                              invalidateDividerPositions();
+                                                            }
+                                                          };
+
+  /**
+   * Follows the dividers moved by the user. The positions the skin writes back
+   * while it lays out the items, for instance clamped to their min and max
+   * sizes after a resize, are ignored so they do not wear down the weights.
+   */
+  private final ChangeListener<Number> dividerListener =
+                                                       new ChangeListener<Number>()
+                                                       {
+                                                         @Override
+                                                         public void changed(ObservableValue<? extends Number> observable,
+                                                                             Number oldValue,
+                                                                             Number newValue)
+                                                         {
+                                                           if (!updatingWeights
+                                                               && dividerPositionsValid)
+                                                           {
+                                                             dividerMoved((Divider) ((ReadOnlyProperty<?>) observable).getBean());
+                                                           }
+                                                         }
+                                                       };
+
+  /**
+   * Sets the weight of a child of a content split pane. The items of a split
+   * pane share its space in proportion to their weights. The weight is kept by
+   * the child, so it persists when the child is docked elsewhere, and it
+   * follows the dividers when the user moves them. A child without a weight
+   * gets its preferred size along the orientation of the split pane as its
+   * weight when the divider positions are computed.
+   *
+   * @param child
+   *          the child
+   * @param weight
+   *          the weight or zero to clear it
+   */
+  public static void setWeight(Node child, double weight)
+  {
+    if (weight > 0)
+    {
+      child.getProperties().put(WEIGHT_CONSTRAINT, weight);
+    }
+    else
+    {
+      child.getProperties().remove(WEIGHT_CONSTRAINT);
+    }
+    // a weight set by the application applies to either orientation
+    child.getProperties().remove(WEIGHT_ORIENTATION);
+  }
+
+  /**
+   * Gets the weight of a child of a content split pane.
+   *
+   * @param child
+   *          the child
+   * @return the weight or zero if the child has none
+   */
+  public static double getWeight(Node child)
+  {
+    if (child.hasProperties())
+    {
+      Object weight = child.getProperties().get(WEIGHT_CONSTRAINT);
+      if (weight instanceof Double)
+      {
+        return (Double) weight;
+      }
+    }
+    return 0;
+  }
+
   public Type getType()
   {
     return Type.SplitPane;
@@ -46,6 +181,56 @@ public class ContentSplitPane extends SplitPane implements ContentPane
    */
   public ContentSplitPane()
   {
+    getItems().addListener(new ListChangeListener<Node>()
+    {
+      @Override
+      public void onChanged(Change<? extends Node> change)
+      {
+        while (change.next())
+        {
+          for (Node item : change.getRemoved())
+          {
+            item.getProperties().removeListener(weightListener);
+            if (item instanceof DockNode)
+            {
+              ((DockNode) item).materializedProperty()
+                               .removeListener(materializedListener);
+            }
+          }
+          for (Node item : change.getAddedSubList())
+          {
+            item.getProperties().addListener(weightListener);
+            if (item instanceof DockNode
+                && !((DockNode) item).isMaterialized())
+            {
+              ((DockNode) item).materializedProperty()
+                               .addListener(materializedListener);
+            }
+          }
+        }
+        invalidateDividerPositions();
+      }
+    });
+
+    // the split pane replaces all dividers whenever its items change
+    getDividers().addListener(new ListChangeListener<Divider>()
+    {
+      @Override
+      public void onChanged(Change<? extends Divider> change)
+      {
+        while (change.next())
+        {
+          for (Divider divider : change.getRemoved())
+          {
+            divider.positionProperty().removeListener(dividerListener);
+          }
+          for (Divider divider : change.getAddedSubList())
+          {
+            divider.positionProperty().addListener(dividerListener);
+          }
+        }
+      }
+    });
   }
 
   /**
@@ -56,14 +241,13 @@ public class ContentSplitPane extends SplitPane implements ContentPane
    */
   public ContentSplitPane(Node node)
   {
+    this();
     getItems().add(node);
   }
 
   public ContentPane getSiblingParent(Stack<Parent> stack,
                                       Node sibling)
   {
-    ContentPane pane = null;
-
     while (!stack.isEmpty())
     {
       Parent parent = stack.pop();
@@ -79,7 +263,7 @@ public class ContentSplitPane extends SplitPane implements ContentPane
       {
         if (children.get(i) == sibling)
         {
-          pane = (ContentPane) parent;
+          return (ContentPane) parent;
         }
         else if (children.get(i) instanceof Parent)
         {
@@ -87,7 +271,7 @@ public class ContentSplitPane extends SplitPane implements ContentPane
         }
       }
     }
-    return pane;
+    return null;
   }
 
   public boolean removeNode(Stack<Parent> stack, Node node)
@@ -140,7 +324,17 @@ public class ContentSplitPane extends SplitPane implements ContentPane
 
   public void set(int idx, Node node)
   {
+    // the node takes the place of the item and therefore its share of space
+    double weight = getWeight(getItems().get(idx));
     getItems().set(idx, node);
+    if (weight > 0)
+    {
+      setWeightSilently(node, weight);
+    }
+    else
+    {
+      setWeight(node, 0);
+    }
   }
 
   public void set(Node sibling, Node node)
@@ -153,96 +347,355 @@ public class ContentSplitPane extends SplitPane implements ContentPane
                       Node node,
                       DockPos dockPos)
   {
-    // finally dock the node to the correct split pane
-    ObservableList<Node> splitItems = getItems();
-
-    double magnitude = 0;
+    // finally dock the node to the correct split pane, the divider positions
+    // follow from the weights of the items
+    insertNode(root, sibling, node, dockPos);
+  }
 
-    if (splitItems.size() > 0)
-    {
-      if (getOrientation() == Orientation.HORIZONTAL)
-      {
-        for (Node splitItem : splitItems)
-        {
-          magnitude += splitItem.prefWidth(0);
-        }
-      }
-      else
-      {
-        for (Node splitItem : splitItems)
-        {
-          magnitude += splitItem.prefHeight(0);
-        }
-      }
-    }
+  /**
+   * Insert a node next to the sibling. The divider positions are computed from
+   * the weights of the items before the next layout.
+   *
+   * @param root
+   *          the root
+   * @param sibling
+   *          the sibling or the root for inserting at either end
+   * @param node
+   *          the node
+   * @param dockPos
+   *          the dock pos
+   * @return the index the node was inserted at or -1 if the dock pos is not
+   *         supported by a split pane
+   */
+  public int insertNode(Node root,
+                        Node sibling,
+                        Node node,
+                        DockPos dockPos)
+  {
+    ObservableList<Node> splitItems = getItems();
 
+    int relativeIndex;
     if (dockPos == DockPos.LEFT || dockPos == DockPos.TOP)
     {
-      int relativeIndex = 0;
+      relativeIndex = 0;
       if (sibling != null && sibling != root)
       {
         relativeIndex = splitItems.indexOf(sibling);
       }
-
-      splitItems.add(relativeIndex, node);
-
-      if (splitItems.size() > 1)
-      {
-        if (getOrientation() == Orientation.HORIZONTAL)
-        {
-          setDividerPosition(relativeIndex,
-                             node.prefWidth(0)
-                                            / (magnitude
-                                               + node.prefWidth(0)));
-        }
-        else
-        {
-          setDividerPosition(relativeIndex,
-                             node.prefHeight(0)
-                                            / (magnitude
-                                               + node.prefHeight(0)));
-        }
-      }
     }
     else if (dockPos == DockPos.RIGHT || dockPos == DockPos.BOTTOM)
     {
-      int relativeIndex = splitItems.size();
+      relativeIndex = splitItems.size();
       if (sibling != null && sibling != root)
       {
         relativeIndex = splitItems.indexOf(sibling) + 1;
       }
+    }
+    else
+    {
+      return -1;
+    }
 
-      splitItems.add(relativeIndex, node);
-      if (splitItems.size() > 1)
+    splitItems.add(relativeIndex, node);
+    return relativeIndex;
+  }
+
+  /**
+   * Compute the divider positions from the weights of the items in one pass
+   * over the items, giving items without a weight their preferred size along
+   * the orientation of this pane as their weight. The positions are computed
+   * lazily before the next layout or when they are queried, so adding several
+   * items costs a single pass.
+   */
+  public void updateDividerPositions()
+  {
+    dividerPositionsValid = true;
+
+    ObservableList<Node> splitItems = getItems();
+    if (splitItems.size() < 2)
+      return;
+
+    double[] weights = new double[splitItems.size()];
+    double total = 0;
+    for (int i = 0; i < weights.length; i++)
+    {
+      weights[i] = weightOf(splitItems.get(i));
+      total += weights[i];
+    }
+
+    double[] positions = new double[weights.length - 1];
+    double position = 0;
+    for (int i = 0; i < positions.length; i++)
+    {
+      position += weights[i] / total;
+      positions[i] = position;
+    }
+
+    updatingWeights = true;
+    try
+    {
+      super.setDividerPositions(positions);
+    }
+    finally
+    {
+      updatingWeights = false;
+    }
+  }
+
+  /**
+   * Sets the divider positions, for instance restored from a saved layout. The
+   * weights of the items are updated to match the positions, keeping the sum
+   * of the weights.
+   */
+  @Override
+  public void setDividerPositions(double... positions)
+  {
+    updatingWeights = true;
+    try
+    {
+      super.setDividerPositions(positions);
+    }
+    finally
+    {
+      updatingWeights = false;
+    }
+    adoptDividerPositions();
+  }
+
+  /**
+   * Sets a divider position. The weights of the items are updated to match
+   * the positions, keeping the sum of the weights.
+   */
+  @Override
+  public void setDividerPosition(int dividerIndex, double position)
+  {
+    updatingWeights = true;
+    try
+    {
+      super.setDividerPosition(dividerIndex, position);
+    }
+    finally
+    {
+      updatingWeights = false;
+    }
+    adoptDividerPositions();
+  }
+
+  @Override
+  public double[] getDividerPositions()
+  {
+    if (!dividerPositionsValid)
+    {
+      updateDividerPositions();
+    }
+    return super.getDividerPositions();
+  }
+
+  @Override
+  protected void layoutChildren()
+  {
+    if (!dividerPositionsValid)
+    {
+      updateDividerPositions();
+    }
+
+    updatingWeights = true;
+    try
+    {
+      super.layoutChildren();
+    }
+    finally
+    {
+      updatingWeights = false;
+    }
+  }
+
+  private void invalidateDividerPositions()
+  {
+    if (dividerPositionsValid)
+    {
+      dividerPositionsValid = false;
+      requestLayout();
+    }
+  }
+
+  /**
+   * The weight of an item, which is set to its preferred size if it has none
+   * or if its weight was computed along the other orientation.
+   */
+  private double weightOf(Node item)
+  {
+    double weight = getWeight(item);
+    Object orientation = weight > 0 ? item.getProperties()
+                                          .get(WEIGHT_ORIENTATION)
+                                    : null;
+    if (weight <= 0
+        || (orientation != null && orientation != getOrientation()))
+    {
+      weight = getOrientation() == Orientation.HORIZONTAL ? item.prefWidth(-1)
+                                                          : item.prefHeight(-1);
+      weight = Math.max(1, weight);
+
+      // the placeholder of a lazy dock node does not tell the size of its
+      // contents, so its weight is measured again once they exist
+      if (item instanceof DockNode && !((DockNode) item).isMaterialized())
+        return weight;
+
+      setWeightSilently(item, weight);
+    }
+    return weight;
+  }
+
+  private void setWeightSilently(Node item, double weight)
+  {
+    updatingWeights = true;
+    try
+    {
+      setWeight(item, Math.max(Double.MIN_NORMAL, weight));
+      item.getProperties().put(WEIGHT_ORIENTATION, getOrientation());
+    }
+    finally
+    {
+      updatingWeights = false;
+    }
+  }
+
+  /**
+   * Distribute the sum of the weights of the items by the current divider
+   * positions.
+   */
+  private void adoptDividerPositions()
+  {
+    ObservableList<Node> splitItems = getItems();
+    double[] positions = super.getDividerPositions();
+    if (positions.length != splitItems.size() - 1)
+      return;
+
+    double total = 0;
+    for (Node item : splitItems)
+    {
+      total += weightOf(item);
+    }
+
+    double previous = 0;
+    for (int i = 0; i < splitItems.size(); i++)
+    {
+      double next = i < positions.length ? positions[i] : 1;
+      setWeightSilently(splitItems.get(i),
+                        total * Math.max(0, next - previous));
+      previous = Math.max(previous, next);
+    }
+    dividerPositionsValid = true;
+  }
+
+  /**
+   * Move weight between the two items next to a divider moved by the user, so
+   * the other items keep their weights.
+   */
+  private void dividerMoved(Divider divider)
+  {
+    List<Divider> dividers = getDividers();
+    int index = dividers.indexOf(divider);
+    if (index < 0 || index + 1 >= getItems().size())
+      return;
+
+    double previous = index > 0 ? dividers.get(index - 1).getPosition() : 0;
+    double next = index + 1 < dividers.size() ? dividers.get(index + 1)
+                                                        .getPosition()
+                                              : 1;
+    if (next <= previous)
+      return;
+
+    Node first = getItems().get(index);
+    Node second = getItems().get(index + 1);
+    double sum = weightOf(first) + weightOf(second);
+    double share = (divider.getPosition() - previous) / (next - previous);
+    share = Math.max(0, Math.min(1, share));
+    setWeightSilently(first, sum * share);
+    setWeightSilently(second, sum * (1 - share));
+  }
+
+  @Override
+  public void requestLayout()
+  {
+    // the parent constructor may request a layout before the cache exists
+    if (sizeConstraints != null)
+    {
+      sizeConstraints.invalidate();
+    }
+    super.requestLayout();
+  }
+
+  @Override
+  protected double computeMinWidth(double height)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MIN_WIDTH, height))
+    {
+      sizeConstraints.put(SizeConstraints.MIN_WIDTH,
+                          height,
+                          super.computeMinWidth(height));
+    }
+    return sizeConstraints.get(SizeConstraints.MIN_WIDTH);
+  }
+
+  @Override
+  protected double computeMinHeight(double width)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MIN_HEIGHT, width))
+    {
+      sizeConstraints.put(SizeConstraints.MIN_HEIGHT,
+                          width,
+                          super.computeMinHeight(width));
+    }
+    return sizeConstraints.get(SizeConstraints.MIN_HEIGHT);
+  }
+
+  @Override
+  protected double computeMaxWidth(double height)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MAX_WIDTH, height))
+    {
+      double maxWidth;
+      if (getOrientation() == Orientation.VERTICAL && !getItems().isEmpty())
       {
-        if (getOrientation() == Orientation.HORIZONTAL)
+        // the items are stacked so none can be wider than the narrowest
+        maxWidth = Double.MAX_VALUE;
+        for (Node item : getItems())
         {
-          setDividerPosition(relativeIndex - 1,
-                             1 - node.prefWidth(0)
-                                 / (magnitude + node.prefWidth(0)));
-        }
-        else
-        {
-          setDividerPosition(relativeIndex - 1,
-                             1 - node.prefHeight(0)
-                                 / (magnitude + node.prefHeight(0)));
+          maxWidth = Math.min(maxWidth, item.maxWidth(height));
         }
       }
+      else
+      {
+        maxWidth = super.computeMaxWidth(height);
+      }
+      sizeConstraints.put(SizeConstraints.MAX_WIDTH, height, maxWidth);
     }
+    return sizeConstraints.get(SizeConstraints.MAX_WIDTH);
   }
 
   @Override
-  protected double computeMaxWidth(double height)
+  protected double computeMaxHeight(double width)
   {
-    if ((getOrientation() == Orientation.VERTICAL)
-        && (!getItems().isEmpty()))
+    if (!sizeConstraints.isValid(SizeConstraints.MAX_HEIGHT, width))
     {
-      return getItems().stream()
-                       .map(i -> i.maxWidth(height))
-                       .min(Comparator.naturalOrder())
-                       .get();
+      double maxHeight;
+      if (getOrientation() == Orientation.HORIZONTAL
+          && !getItems().isEmpty())
+      {
+        // the items are side by side so none can be taller than the lowest
+        maxHeight = Double.MAX_VALUE;
+        for (Node item : getItems())
+        {
+          maxHeight = Math.min(maxHeight, item.maxHeight(width));
+        }
+      }
+      else
+      {
+        maxHeight = super.computeMaxHeight(width);
+      }
+      sizeConstraints.put(SizeConstraints.MAX_HEIGHT, width, maxHeight);
     }
-
-    return super.computeMaxWidth(height);
+    return sizeConstraints.get(SizeConstraints.MAX_HEIGHT);
   }
 }
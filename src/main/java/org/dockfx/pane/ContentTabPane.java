@@ -1,13 +1,18 @@
 package org.dockfx.pane;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
-import java.util.stream.Collectors;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.ListChangeListener;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.Skin;
+import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
+import javafx.util.Duration;
 
 import org.dockfx.DockNode;
 import org.dockfx.DockPos;
@@ -21,10 +26,131 @@ import org.dockfx.pane.skin.ContentTabPaneSkin;
 public class ContentTabPane extends TabPane implements ContentPane
 {
 
+  /**
+   * What happens to the contents of the tabs that are not selected.
+   */
+  public enum DetachPolicy
+  {
+   /**
+    * The contents of all tabs stay in the scene graph and are only hidden.
+    */
+   KEEP_ATTACHED,
+
+   /**
+    * The contents of a tab are removed from the scene graph as soon as the tab
+    * is no longer selected, so they are not styled or laid out while hidden.
+    */
+   DETACH_WHEN_HIDDEN,
+
+   /**
+    * The contents of a tab are removed from the scene graph once the tab has
+    * not been selected for the detach timeout, so switching back and forth
+    * between tabs stays cheap.
+    */
+   DETACH_AFTER_TIMEOUT;
+  }
+
   ContentPane parent;
 
+  /**
+   * The contents of the tabs in the order of the tabs, kept in sync with the
+   * tabs so that the children list does not have to be built on every call.
+   */
+  private final List<Node> children = new ArrayList<>();
+
+  /**
+   * The unmodifiable live view of the contents of the tabs.
+   */
+  private final List<Node> childrenView =
+                                        Collections.unmodifiableList(children);
+
+  /**
+   * The cached min and max sizes.
+   */
+  private final SizeConstraints sizeConstraints = new SizeConstraints();
+
   public ContentTabPane()
   {
+    getTabs().addListener(new ListChangeListener<Tab>()
+    {
+      @Override
+      public void onChanged(Change<? extends Tab> change)
+      {
+        while (change.next())
+        {
+          if (change.wasPermutated())
+          {
+            for (int i = change.getFrom(); i < change.getTo(); i++)
+            {
+              children.set(i, getTabs().get(i).getContent());
+            }
+            continue;
+          }
+
+          int from = change.getFrom();
+          children.subList(from, from + change.getRemovedSize()).clear();
+
+          List<Node> added = new ArrayList<>(change.getAddedSize());
+          for (Tab tab : change.getAddedSubList())
+          {
+            added.add(tab.getContent());
+          }
+          children.addAll(from, added);
+        }
+      }
+    });
+  }
+
+  /**
+   * The policy for the contents of the tabs that are not selected. The
+   * contents of a detached tab are attached again when the tab is selected.
+   *
+   * @defaultValue KEEP_ATTACHED
+   */
+  public final ObjectProperty<DetachPolicy> detachPolicyProperty()
+  {
+    return detachPolicy;
+  }
+
+  private final ObjectProperty<DetachPolicy> detachPolicy =
+                                                          new SimpleObjectProperty<>(this,
+                                                                                     "detachPolicy",
+                                                                                     DetachPolicy.KEEP_ATTACHED);
+
+  public final DetachPolicy getDetachPolicy()
+  {
+    return detachPolicy.get();
+  }
+
+  public final void setDetachPolicy(DetachPolicy policy)
+  {
+    detachPolicy.set(policy);
+  }
+
+  /**
+   * How long the tab of the contents has not been selected before they are
+   * detached with {@link DetachPolicy#DETACH_AFTER_TIMEOUT}.
+   *
+   * @defaultValue 30 seconds
+   */
+  public final ObjectProperty<Duration> detachTimeoutProperty()
+  {
+    return detachTimeout;
+  }
+
+  private final ObjectProperty<Duration> detachTimeout =
+                                                       new SimpleObjectProperty<>(this,
+                                                                                  "detachTimeout",
+                                                                                  Duration.seconds(30));
+
+  public final Duration getDetachTimeout()
+  {
+    return detachTimeout.get();
+  }
+
+  public final void setDetachTimeout(Duration timeout)
+  {
+    detachTimeout.set(timeout);
   }
 
   /** {@inheritDoc} */
@@ -52,8 +178,6 @@ public class ContentTabPane extends TabPane implements ContentPane
   public ContentPane getSiblingParent(Stack<Parent> stack,
                                       Node sibling)
   {
-    ContentPane pane = null;
-
     while (!stack.isEmpty())
     {
       Parent parent = stack.pop();
@@ -69,7 +193,7 @@ public class ContentTabPane extends TabPane implements ContentPane
       {
         if (children.get(i) == sibling)
         {
-          pane = (ContentPane) parent;
+          return (ContentPane) parent;
         }
         else if (children.get(i) instanceof Parent)
         {
@@ -77,7 +201,7 @@ public class ContentTabPane extends TabPane implements ContentPane
         }
       }
     }
-    return pane;
+    return null;
   }
 
   public boolean removeNode(Stack<Parent> stack, Node node)
@@ -110,9 +234,7 @@ public class ContentTabPane extends TabPane implements ContentPane
 
   public List<Node> getChildrenList()
   {
-    return getTabs().stream()
-                    .map(i -> i.getContent())
-                    .collect(Collectors.toList());
+    return childrenView;
   }
 
   public void addNode(Node root,
@@ -131,12 +253,76 @@ public class ContentTabPane extends TabPane implements ContentPane
     getSelectionModel().select(dockNodeTab);
   }
 
+  @Override
+  public void requestLayout()
+  {
+    // the parent constructor may request a layout before the cache exists
+    if (sizeConstraints != null)
+    {
+      sizeConstraints.invalidate();
+    }
+    super.requestLayout();
+  }
+
+  @Override
+  protected double computeMinWidth(double height)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MIN_WIDTH, height))
+    {
+      sizeConstraints.put(SizeConstraints.MIN_WIDTH,
+                          height,
+                          super.computeMinWidth(height));
+    }
+    return sizeConstraints.get(SizeConstraints.MIN_WIDTH);
+  }
+
+  @Override
+  protected double computeMinHeight(double width)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MIN_HEIGHT, width))
+    {
+      sizeConstraints.put(SizeConstraints.MIN_HEIGHT,
+                          width,
+                          super.computeMinHeight(width));
+    }
+    return sizeConstraints.get(SizeConstraints.MIN_HEIGHT);
+  }
+
   @Override
   protected double computeMaxWidth(double height)
   {
-    return getTabs().stream()
-                    .map(i -> i.getContent().maxWidth(height))
-                    .min(Comparator.naturalOrder())
-                    .get();
+    if (!sizeConstraints.isValid(SizeConstraints.MAX_WIDTH, height))
+    {
+      // the tabs share the width so none can be wider than the narrowest,
+      // an empty tab pane is as wide as its skin allows
+      double maxWidth = Double.MAX_VALUE;
+      boolean constrained = false;
+      for (Node child : children)
+      {
+        if (child != null)
+        {
+          maxWidth = Math.min(maxWidth, child.maxWidth(height));
+          constrained = true;
+        }
+      }
+      if (!constrained)
+      {
+        maxWidth = super.computeMaxWidth(height);
+      }
+      sizeConstraints.put(SizeConstraints.MAX_WIDTH, height, maxWidth);
+    }
+    return sizeConstraints.get(SizeConstraints.MAX_WIDTH);
+  }
+
+  @Override
+  protected double computeMaxHeight(double width)
+  {
+    if (!sizeConstraints.isValid(SizeConstraints.MAX_HEIGHT, width))
+    {
+      sizeConstraints.put(SizeConstraints.MAX_HEIGHT,
+                          width,
+                          super.computeMaxHeight(width));
+    }
+    return sizeConstraints.get(SizeConstraints.MAX_HEIGHT);
   }
 }
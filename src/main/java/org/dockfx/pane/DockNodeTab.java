@@ -1,5 +1,7 @@
 package org.dockfx.pane;
 
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.scene.control.Tab;
 
@@ -29,6 +31,19 @@ public class DockNodeTab extends Tab
     setContent(dockNode);
     dockNode.tabbedProperty().set(true);
     dockNode.setNodeTab(this);
+
+    // a lazy dock node creates its contents when its tab is first selected
+    selectedProperty().addListener(new InvalidationListener()
+    {
+      @Override
+      public void invalidated(Observable observable)
+      {
+        if (isSelected())
+        {
+          dockNode.materialize();
+        }
+      }
+    });
   }
 
   public String getTitle()
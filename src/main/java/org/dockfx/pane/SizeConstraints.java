@@ -0,0 +1,73 @@
+package org.dockfx.pane;
+
+/**
+ * SizeConstraints caches the min and max sizes computed by a content pane
+ * until the content pane requests a layout, which it does whenever its
+ * children change or any child's size constraints change, the same way
+ * JavaFX caches the preferred size of a parent.
+ */
+final class SizeConstraints
+{
+  static final int MIN_WIDTH = 0;
+  static final int MIN_HEIGHT = 1;
+  static final int MAX_WIDTH = 2;
+  static final int MAX_HEIGHT = 3;
+
+  private final double[] values = new double[4];
+  private final double[] arguments = new double[4];
+  private int valid = 0;
+
+  /**
+   * Drop all cached sizes.
+   */
+  void invalidate()
+  {
+    valid = 0;
+  }
+
+  /**
+   * Whether a size was cached for the argument.
+   *
+   * @param constraint
+   *          the constraint
+   * @param argument
+   *          the height for widths or the width for heights
+   * @return true if the cached size can be used
+   */
+  boolean isValid(int constraint, double argument)
+  {
+    return (valid & (1 << constraint)) != 0
+           && Double.compare(arguments[constraint], argument) == 0;
+  }
+
+  /**
+   * Gets the cached size.
+   *
+   * @param constraint
+   *          the constraint
+   * @return the cached size
+   */
+  double get(int constraint)
+  {
+    return values[constraint];
+  }
+
+  /**
+   * Cache a size.
+   *
+   * @param constraint
+   *          the constraint
+   * @param argument
+   *          the height for widths or the width for heights
+   * @param value
+   *          the size
+   * @return the size
+   */
+  double put(int constraint, double argument, double value)
+  {
+    values[constraint] = value;
+    arguments[constraint] = argument;
+    valid |= 1 << constraint;
+    return value;
+  }
+}
@@ -7,6 +7,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
 import javafx.animation.Animation;
 import javafx.animation.Interpolator;
 import javafx.animation.KeyFrame;
@@ -70,6 +76,8 @@ import com.sun.javafx.scene.traversal.Direction;
 import com.sun.javafx.scene.traversal.TraversalEngine;
 import com.sun.javafx.util.Utils;
 
+import org.dockfx.pane.ContentTabPane;
+import org.dockfx.pane.ContentTabPane.DetachPolicy;
 import org.dockfx.pane.DockNodeTab;
 
 /**
@@ -183,6 +191,25 @@ public class ContentTabPaneSkin extends
   private static final double ANIMATION_SPEED = 150;
   private static final int SPACER = 10;
 
+  /**
+   * Wakes up the skins with content waiting to be detached. A plain scheduler
+   * is used rather than an animation so that waiting tabs do not keep the
+   * pulses running.
+   */
+  private static final ScheduledExecutorService DETACH_SCHEDULER =
+                                                                 Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+                                                                 {
+                                                                   @Override
+                                                                   public Thread newThread(Runnable runnable)
+                                                                   {
+                                                                     Thread thread =
+                                                                                   new Thread(runnable,
+                                                                                              "DockFX tab content detach");
+                                                                     thread.setDaemon(true);
+                                                                     return thread;
+                                                                   }
+                                                                 });
+
   private TabHeaderArea tabHeaderArea;
   private ObservableList<TabContentRegion> tabContentRegions;
   private Rectangle clipRect;
@@ -190,6 +217,12 @@ public class ContentTabPaneSkin extends
   private Tab selectedTab;
   private boolean isSelectingTab;
 
+  /**
+   * The wake up for the earliest detach deadline of the tab content regions,
+   * null if no content is waiting to be detached.
+   */
+  private ScheduledFuture<?> detachTask;
+
   public ContentTabPaneSkin(TabPane tabPane)
   {
     super(tabPane, new TabPaneBehavior(tabPane));
@@ -222,6 +255,13 @@ public class ContentTabPaneSkin extends
     registerChangeListener(tabPane.sideProperty(), "SIDE");
     registerChangeListener(tabPane.widthProperty(), "WIDTH");
     registerChangeListener(tabPane.heightProperty(), "HEIGHT");
+    if (tabPane instanceof ContentTabPane)
+    {
+      registerChangeListener(((ContentTabPane) tabPane).detachPolicyProperty(),
+                             "DETACH_POLICY");
+      registerChangeListener(((ContentTabPane) tabPane).detachTimeoutProperty(),
+                             "DETACH_TIMEOUT");
+    }
 
     selectedTab =
                 getSkinnable().getSelectionModel().getSelectedItem();
@@ -284,6 +324,102 @@ public class ContentTabPaneSkin extends
     {
       clipRect.setHeight(getSkinnable().getHeight());
     }
+    else if ("DETACH_POLICY".equals(property))
+    {
+      for (TabContentRegion contentRegion : tabContentRegions)
+      {
+        contentRegion.updateAttachment();
+      }
+    }
+    else if ("DETACH_TIMEOUT".equals(property))
+    {
+      detachExpiredContent();
+    }
+  }
+
+  @Override
+  public void dispose()
+  {
+    if (detachTask != null)
+    {
+      detachTask.cancel(false);
+      detachTask = null;
+    }
+    super.dispose();
+  }
+
+  /**
+   * Detach the content of the regions whose detach timeout expired and wake up
+   * again for the earliest remaining deadline.
+   */
+  private void detachExpiredContent()
+  {
+    long timeout = (long) getDetachTimeout().toMillis();
+    long now = System.currentTimeMillis();
+    long earliest = Long.MAX_VALUE;
+    for (TabContentRegion contentRegion : tabContentRegions)
+    {
+      if (!contentRegion.detachPending)
+        continue;
+
+      long deadline = contentRegion.hiddenSince + timeout;
+      if (deadline <= now)
+      {
+        contentRegion.detachPending = false;
+        contentRegion.setContentAttached(false);
+      }
+      else
+      {
+        earliest = Math.min(earliest, deadline);
+      }
+    }
+
+    if (detachTask != null)
+    {
+      detachTask.cancel(false);
+      detachTask = null;
+    }
+    if (earliest != Long.MAX_VALUE)
+    {
+      detachTask = DETACH_SCHEDULER.schedule(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          Platform.runLater(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              detachExpiredContent();
+            }
+          });
+        }
+      }, earliest - now, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private DetachPolicy getDetachPolicy()
+  {
+    if (getSkinnable() instanceof ContentTabPane)
+    {
+      return ((ContentTabPane) getSkinnable()).getDetachPolicy();
+    }
+    return DetachPolicy.KEEP_ATTACHED;
+  }
+
+  private Duration getDetachTimeout()
+  {
+    if (getSkinnable() instanceof ContentTabPane)
+    {
+      Duration timeout =
+                         ((ContentTabPane) getSkinnable()).getDetachTimeout();
+      if (timeout != null)
+      {
+        return timeout;
+      }
+    }
+    return Duration.ZERO;
   }
 
   private void removeTabs(List<? extends Tab> removedList)
@@ -2104,6 +2240,7 @@ public class ContentTabPaneSkin extends
                                                        public void invalidated(Observable valueModel)
                                                        {
                                                          setVisible(tab.isSelected());
+                                                         updateAttachment();
                                                        }
                                                      };
 
@@ -2117,11 +2254,28 @@ public class ContentTabPaneSkin extends
       return tab;
     }
 
+    /**
+     * Whether the content of the tab is in the scene graph.
+     */
+    private boolean contentAttached = true;
+
+    /**
+     * Whether the content waits for the detach timeout to be detached.
+     */
+    private boolean detachPending;
+
+    /**
+     * The time in milliseconds the tab was last deselected.
+     */
+    private long hiddenSince;
+
     public TabContentRegion(Tab tab)
     {
       getStyleClass().setAll("tab-content-area");
       setManaged(false);
       this.tab = tab;
+      contentAttached = tab.isSelected()
+                        || getDetachPolicy() == DetachPolicy.KEEP_ATTACHED;
       updateContent();
       setVisible(tab.isSelected());
 
@@ -2132,7 +2286,7 @@ public class ContentTabPaneSkin extends
     private void updateContent()
     {
       Node newContent = getTab().getContent();
-      if (newContent == null)
+      if (newContent == null || !contentAttached)
       {
         getChildren().clear();
       }
@@ -2142,10 +2296,51 @@ public class ContentTabPaneSkin extends
       }
     }
 
+    /**
+     * Attach or detach the content of the tab following its selection and
+     * the detach policy of the tab pane.
+     */
+    private void updateAttachment()
+    {
+      boolean wasPending = detachPending;
+      detachPending = false;
+
+      DetachPolicy policy = getDetachPolicy();
+      if (tab.isSelected() || policy == DetachPolicy.KEEP_ATTACHED)
+      {
+        setContentAttached(true);
+      }
+      else if (policy == DetachPolicy.DETACH_WHEN_HIDDEN
+               || !contentAttached)
+      {
+        setContentAttached(false);
+      }
+      else
+      {
+        detachPending = true;
+        hiddenSince = System.currentTimeMillis();
+      }
+
+      if (wasPending || detachPending)
+      {
+        detachExpiredContent();
+      }
+    }
+
+    private void setContentAttached(boolean attached)
+    {
+      if (contentAttached != attached)
+      {
+        contentAttached = attached;
+        updateContent();
+      }
+    }
+
     private void removeListeners(Tab tab)
     {
       tab.selectedProperty().removeListener(weakTabSelectedListener);
       tab.contentProperty().removeListener(weakTabContentListener);
+      detachPending = false;
     }
 
   } /* End TabContentRegion */
@@ -0,0 +1,171 @@
+/**
+ * @file DockPaneTest.java
+ * @brief Tests of the animation lifecycle of the dock pane.
+ *
+ * @section License
+ *
+ *          This file is a part of the DockFX Library. Copyright (C) 2015 Robert B. Colton
+ *
+ *          This program is free software: you can redistribute it and/or modify it under the terms
+ *          of the GNU Lesser General Public License as published by the Free Software Foundation,
+ *          either version 3 of the License, or (at your option) any later version.
+ *
+ *          This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *          WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *          PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ *          You should have received a copy of the GNU Lesser General Public License along with this
+ *          program. If not, see <http://www.gnu.org/licenses/>.
+ **/
+
+package org.dockfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import javafx.animation.Animation;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.control.Label;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The dock area indicator of a dock pane is only animated while a dock node
+ * is dragged over it, so that the pulse goes idle when nothing is dragged.
+ */
+public class DockPaneTest
+{
+  @BeforeClass
+  public static void startToolkit() throws InterruptedException
+  {
+    // the toolkit needs a display unless it runs on the headless Monocle
+    // platform
+    Assume.assumeTrue("Monocle".equals(System.getProperty("glass.platform"))
+                      || !GraphicsEnvironment.isHeadless());
+
+    final CountDownLatch started = new CountDownLatch(1);
+    try
+    {
+      PlatformImpl.startup(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          started.countDown();
+        }
+      });
+    }
+    catch (IllegalStateException e)
+    {
+      // the toolkit was already started by another test
+      started.countDown();
+    }
+    catch (UnsupportedOperationException e)
+    {
+      // the toolkit could not open a display
+      Assume.assumeNoException(e);
+    }
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testIdleAfterConstruction() throws Exception
+  {
+    Animation.Status status = onFxThread(new Callable<Animation.Status>()
+    {
+      @Override
+      public Animation.Status call()
+      {
+        return new DockPane().getDockAreaStrokeTimeline().getStatus();
+      }
+    });
+    assertEquals(Animation.Status.STOPPED, status);
+  }
+
+  @Test
+  public void testStoppedOnExit() throws Exception
+  {
+    assertLifecycle(DockEvent.DOCK_EXIT);
+  }
+
+  @Test
+  public void testStoppedOnRelease() throws Exception
+  {
+    assertLifecycle(DockEvent.DOCK_RELEASED);
+  }
+
+  private static void assertLifecycle(final EventType<DockEvent> endType)
+    throws Exception
+  {
+    Animation.Status[] statuses =
+                                onFxThread(new Callable<Animation.Status[]>()
+                                {
+                                  @Override
+                                  public Animation.Status[] call()
+                                  {
+                                    return dragOver(endType);
+                                  }
+                                });
+
+    assertEquals(Animation.Status.RUNNING, statuses[0]);
+    assertEquals(Animation.Status.STOPPED, statuses[1]);
+  }
+
+  /**
+   * Drag a dock node into and over a dock pane and end the drag. The events
+   * are dispatched through the event filters of the dock pane like they are
+   * during a drag.
+   *
+   * @return The status of the animation after the dock node was dragged over
+   *         the dock pane and after the drag ended.
+   */
+  private static Animation.Status[] dragOver(EventType<DockEvent> endType)
+  {
+    DockPane dockPane = new DockPane();
+    DockNode dockNode = new DockNode(new Label("Contents"), "Node");
+    Animation.Status[] statuses = new Animation.Status[2];
+
+    Event.fireEvent(dockPane,
+                    dockEvent(dockPane, dockNode, DockEvent.DOCK_ENTER));
+    Event.fireEvent(dockPane,
+                    dockEvent(dockPane, dockNode, DockEvent.DOCK_OVER));
+    statuses[0] = dockPane.getDockAreaStrokeTimeline().getStatus();
+
+    Event.fireEvent(dockPane, dockEvent(dockPane, dockNode, endType));
+    statuses[1] = dockPane.getDockAreaStrokeTimeline().getStatus();
+    return statuses;
+  }
+
+  private static DockEvent dockEvent(DockPane dockPane,
+                                     DockNode dockNode,
+                                     EventType<DockEvent> eventType)
+  {
+    return new DockEvent(dockPane,
+                         dockPane,
+                         eventType,
+                         0,
+                         0,
+                         0,
+                         0,
+                         null,
+                         dockNode);
+  }
+
+  private static <T> T onFxThread(Callable<T> callable) throws Exception
+  {
+    FutureTask<T> task = new FutureTask<>(callable);
+    Platform.runLater(task);
+    return task.get(10, TimeUnit.SECONDS);
+  }
+}